@@ -0,0 +1,69 @@
+package hw4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many queries per second the parallel batch API answers. Each invocation runs one batch, and the
+ * score is per query, so it can be compared with the single query latency to see how well batches scale over the
+ * cores.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class BatchQueryBenchmark {
+
+  /**
+   * Number of queries in a batch
+   */
+  private static final int BATCH = 256;
+
+  /**
+   * Sources of the batch (one based indices)
+   */
+  private int[] sources;
+
+  /**
+   * Targets of the batch (one based indices)
+   */
+  private int[] targets;
+
+  /**
+   * Picks the batch
+   *
+   * @param graph - The grid being queried
+   */
+  @Setup(Level.Trial)
+  public void pick(GraphState graph) {
+    int[][] pairs = GridFiles.queries(graph.size, BATCH, 7);
+    sources = pairs[0];
+    targets = pairs[1];
+  }
+
+  /**
+   * Answers the whole batch
+   *
+   * @param graph - The grid being queried
+   * @return - The paths, returned so the work is not optimized away
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int[][] findPaths(GraphState graph) {
+    return graph.graph.findPaths(sources, targets, graph.weighted, graph.mode);
+  }
+}
@@ -0,0 +1,106 @@
+package hw4.benchmarks;
+
+import hw4.student.GridGraph;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to get a graph into memory, from the text format and from a binary snapshot. Each
+ * operation loads the whole file, so divide the grid's vertex count by the score to get vertices per millisecond.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class BuildGraphBenchmark {
+
+  /**
+   * Length of one side of the grid
+   */
+  @Param({"32", "128", "512", "2048"})
+  public int size;
+
+  /**
+   * Kind of grid
+   */
+  @Param({"RANDOM", "MAZE"})
+  public GridFiles.Kind kind;
+
+  /**
+   * The text file of the grid
+   */
+  private Path textFile;
+
+  /**
+   * A snapshot of the same grid
+   */
+  private Path snapshotFile;
+
+  /**
+   * Writes the grid files if they do not exist yet
+   *
+   * @throws IOException - If a file can not be written
+   */
+  @Setup(Level.Trial)
+  public void writeFiles() throws IOException {
+    textFile = GridFiles.get(kind, size, 1);
+    snapshotFile = Files.createTempFile("gridgraph", ".bin");
+    GridGraph graph = new GridGraph();
+    graph.buildGraph(textFile.toString());
+    graph.saveSnapshot(snapshotFile.toString());
+  }
+
+  /**
+   * Removes the snapshot written for this trial
+   *
+   * @throws IOException - If the file can not be removed
+   */
+  @TearDown(Level.Trial)
+  public void removeSnapshot() throws IOException {
+    Files.deleteIfExists(snapshotFile);
+  }
+
+  /**
+   * Parses the text file
+   *
+   * @return - The loaded graph, returned so the work is not optimized away
+   * @throws IOException - If the file can not be read
+   */
+  @Benchmark
+  public GridGraph buildGraph() throws IOException {
+    GridGraph graph = new GridGraph();
+    graph.buildGraph(textFile.toString());
+    return graph;
+  }
+
+  /**
+   * Loads the binary snapshot
+   *
+   * @return - The loaded graph, returned so the work is not optimized away
+   * @throws IOException - If the file can not be read
+   */
+  @Benchmark
+  public GridGraph loadSnapshot() throws IOException {
+    GridGraph graph = new GridGraph();
+    graph.loadSnapshot(snapshotFile.toString());
+    return graph;
+  }
+}
@@ -0,0 +1,68 @@
+package hw4.benchmarks;
+
+import hw4.student.GridGraph;
+import hw4.student.SearchMode;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A loaded grid shared by every benchmark thread, prepared for the search mode being measured. Landmarks are built
+ * once per trial, so only the queries are timed. Contraction hierarchies are measured on HierarchyState, which
+ * stops at smaller grids.
+ */
+
+@State(Scope.Benchmark)
+public class GraphState {
+
+  /**
+   * Number of landmarks built for ALT queries
+   */
+  private static final int LANDMARKS = 8;
+
+  /**
+   * Length of one side of the grid
+   */
+  @Param({"32", "128", "512", "2048"})
+  public int size;
+
+  /**
+   * Kind of grid
+   */
+  @Param({"RANDOM", "MAZE"})
+  public GridFiles.Kind kind;
+
+  /**
+   * Search algorithm to query with
+   */
+  @Param({"DIJKSTRA", "A_STAR", "BIDIRECTIONAL", "ALT", "JUMP_POINT"})
+  public SearchMode mode;
+
+  /**
+   * Whether edge weights are used
+   */
+  @Param({"true", "false"})
+  public boolean weighted;
+
+  /**
+   * The loaded grid
+   */
+  public GridGraph graph;
+
+  /**
+   * Loads the grid and runs the preprocessing the search mode needs
+   *
+   * @throws IOException - If the grid file can not be written or read
+   */
+  @Setup(Level.Trial)
+  public void load() throws IOException {
+    graph = new GridGraph();
+    graph.buildGraph(GridFiles.get(kind, size, 1).toString());
+    if (mode == SearchMode.ALT) {
+      graph.buildLandmarks(Math.min(LANDMARKS, size * size), weighted);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package hw4.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+/**
+ * Generates the graph files the benchmarks load, in the tab separated format read by GridGraph.buildGraph. Files are
+ * written once to the temporary directory and reused by later runs, since the largest grids take a while to write.
+ * The same kind, size and seed always give the same file.
+ */
+
+final class GridFiles {
+
+  /**
+   * The kinds of grid the benchmarks run on
+   */
+  enum Kind {
+
+    /**
+     * Every edge between grid neighbours exists with probability 0.9, with a weight from 1 to 99. Searches spread
+     * out evenly, like on an open terrain map.
+     */
+    RANDOM,
+
+    /**
+     * A maze carved by a randomized depth-first search, with a few extra walls knocked down so there is more than
+     * one way through. Edges go both ways with a weight from 1 to 9. Paths are long and winding, and most of the
+     * grid is a dead end for any given query.
+     */
+    MAZE
+  }
+
+  /**
+   * Share of the remaining walls that are knocked down in a maze
+   */
+  private static final double MAZE_LOOPS = 0.05;
+
+  /**
+   * Only static methods are provided
+   */
+  private GridFiles() {
+  }
+
+  /**
+   * Returns the file of a grid, writing it first if it does not exist yet
+   *
+   * @param kind - The kind of grid
+   * @param size - The length of one side of the grid
+   * @param seed - Seed of the random weights and walls
+   * @return - The path of the file
+   * @throws IOException - If the file can not be written
+   */
+  static Path get(Kind kind, int size, long seed) throws IOException {
+    Path file = Paths.get(System.getProperty("java.io.tmpdir"),
+        "gridgraph-" + kind.name().toLowerCase() + "-" + size + "-" + seed + ".txt");
+    if (Files.exists(file)) {
+      return file;
+    }
+    //Written under another name first, so an interrupted run never leaves half a file behind
+    Path partial = Files.createTempFile(file.getParent(), "gridgraph", ".part");
+    try (Writer out = Files.newBufferedWriter(partial, StandardCharsets.US_ASCII)) {
+      out.write(size + "\n");
+      if (kind == Kind.RANDOM) {
+        writeRandom(out, size, new SplittableRandom(seed));
+      } else {
+        writeMaze(out, size, new SplittableRandom(seed));
+      }
+    }
+    Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+    return file;
+  }
+
+  /**
+   * Writes the edges of a random grid
+   *
+   * @param out - Where the edges are written
+   * @param size - The length of one side of the grid
+   * @param random - Source of the edges and weights
+   * @throws IOException - If the edges can not be written
+   */
+  private static void writeRandom(Writer out, int size, SplittableRandom random) throws IOException {
+    int vertices = size * size;
+    for (int i = 0; i < vertices; i++) {
+      int col = i % size;
+      int[] neighbours = {col != size - 1 ? i + 1 : -1, col != 0 ? i - 1 : -1, i + size < vertices ? i + size : -1,
+          i - size};
+      for (int j : neighbours) {
+        if (j >= 0 && random.nextDouble() < 0.9) {
+          writeEdge(out, i, j, 1 + random.nextInt(99));
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the edges of a maze. The maze is a random spanning tree of the grid grown by an iterative depth-first
+   * search, plus a few extra openings.
+   *
+   * @param out - Where the edges are written
+   * @param size - The length of one side of the grid
+   * @param random - Source of the walls and weights
+   * @throws IOException - If the edges can not be written
+   */
+  private static void writeMaze(Writer out, int size, SplittableRandom random) throws IOException {
+    int vertices = size * size;
+    if (vertices == 0) {
+      return;
+    }
+    //open[i] bit 0 is the passage to i + 1, bit 1 the passage to i + size
+    byte[] open = new byte[vertices];
+    boolean[] visited = new boolean[vertices];
+    int[] stack = new int[vertices];
+    int top = 0;
+    stack[top++] = 0;
+    visited[0] = true;
+    int[] options = new int[4];
+    while (top > 0) {
+      int v = stack[top - 1];
+      int col = v % size;
+      int count = 0;
+      if (col != size - 1 && !visited[v + 1]) {
+        options[count++] = v + 1;
+      }
+      if (col != 0 && !visited[v - 1]) {
+        options[count++] = v - 1;
+      }
+      if (v + size < vertices && !visited[v + size]) {
+        options[count++] = v + size;
+      }
+      if (v >= size && !visited[v - size]) {
+        options[count++] = v - size;
+      }
+      if (count == 0) {
+        top--;
+        continue;
+      }
+      int next = options[random.nextInt(count)];
+      carve(open, v, next);
+      visited[next] = true;
+      stack[top++] = next;
+    }
+
+    for (int v = 0; v < vertices; v++) {
+      if (v % size != size - 1 && (open[v] & 1) == 0 && random.nextDouble() < MAZE_LOOPS) {
+        open[v] |= 1;
+      }
+      if (v + size < vertices && (open[v] & 2) == 0 && random.nextDouble() < MAZE_LOOPS) {
+        open[v] |= 2;
+      }
+    }
+
+    for (int v = 0; v < vertices; v++) {
+      if ((open[v] & 1) != 0) {
+        int weight = 1 + random.nextInt(9);
+        writeEdge(out, v, v + 1, weight);
+        writeEdge(out, v + 1, v, weight);
+      }
+      if ((open[v] & 2) != 0) {
+        int weight = 1 + random.nextInt(9);
+        writeEdge(out, v, v + size, weight);
+        writeEdge(out, v + size, v, weight);
+      }
+    }
+  }
+
+  /**
+   * Opens the passage between two neighbouring cells of a maze
+   *
+   * @param open - Passage bits of every cell
+   * @param a - One cell
+   * @param b - A grid neighbour of the cell
+   */
+  private static void carve(byte[] open, int a, int b) {
+    int low = Math.min(a, b);
+    int high = Math.max(a, b);
+    open[low] |= high == low + 1 ? 1 : 2;
+  }
+
+  /**
+   * Writes one edge line
+   *
+   * @param out - Where the line is written
+   * @param from - Zero based index of the vertex the edge starts at
+   * @param to - Zero based index of the vertex the edge ends at
+   * @param weight - The weight of the edge
+   * @throws IOException - If the line can not be written
+   */
+  private static void writeEdge(Writer out, int from, int to, int weight) throws IOException {
+    out.write(Integer.toString(from + 1));
+    out.write('\t');
+    out.write(Integer.toString(to + 1));
+    out.write('\t');
+    out.write(Integer.toString(weight));
+    out.write('\n');
+  }
+
+  /**
+   * Picks random query pairs. Every pair is drawn uniformly over the whole grid, so queries cover short and long
+   * paths alike.
+   *
+   * @param size - The length of one side of the grid
+   * @param count - Number of pairs
+   * @param seed - Seed of the pairs
+   * @return - Sources in the first row, targets in the second (one based indices)
+   */
+  static int[][] queries(int size, int count, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    int vertices = size * size;
+    int[][] pairs = new int[2][count];
+    for (int i = 0; i < count; i++) {
+      pairs[0][i] = 1 + random.nextInt(vertices);
+      pairs[1][i] = 1 + random.nextInt(vertices);
+    }
+    return pairs;
+  }
+}
@@ -0,0 +1,73 @@
+package hw4.benchmarks;
+
+import hw4.student.SearchMode;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of single contraction hierarchy queries, the same way QueryBenchmark measures the other
+ * search modes, so the scores of the two can be compared for the sizes they share.
+ */
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class HierarchyQueryBenchmark {
+
+  /**
+   * Query pairs and a path buffer, one set per benchmark thread
+   */
+  @State(Scope.Thread)
+  public static class Queries extends QueryPairs {
+
+    /**
+     * Picks the pairs for this thread
+     *
+     * @param graph - The grid being queried
+     */
+    @Setup(Level.Trial)
+    public void pick(HierarchyState graph) {
+      fill(graph.size);
+    }
+  }
+
+  /**
+   * Finds a path and formats it as a String, like the original interface does
+   *
+   * @param graph - The grid being queried
+   * @param queries - This thread's pairs
+   * @return - The path, returned so the work is not optimized away
+   */
+  @Benchmark
+  public String findShortestPath(HierarchyState graph, Queries queries) {
+    int i = queries.advance();
+    return graph.graph.findShortestPath(queries.sources[i], queries.targets[i], graph.weighted,
+        SearchMode.CONTRACTION_HIERARCHY);
+  }
+
+  /**
+   * Finds a path into a reused buffer
+   *
+   * @param graph - The grid being queried
+   * @param queries - This thread's pairs
+   * @return - The number of vertices on the path, returned so the work is not optimized away
+   */
+  @Benchmark
+  public int findPathIntoBuffer(HierarchyState graph, Queries queries) {
+    int i = queries.advance();
+    return graph.graph.findPath(queries.sources[i], queries.targets[i], graph.weighted,
+        SearchMode.CONTRACTION_HIERARCHY, queries.path);
+  }
+}
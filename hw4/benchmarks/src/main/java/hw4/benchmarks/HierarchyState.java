@@ -0,0 +1,54 @@
+package hw4.benchmarks;
+
+import hw4.student.GridGraph;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A loaded grid with a contraction hierarchy, shared by every benchmark thread. It is kept apart from GraphState so
+ * it can stop at smaller grids: preprocessing takes seconds at 512x512 and minutes at 2048x2048. The hierarchy is
+ * built once per trial, so only the queries are timed.
+ */
+
+@State(Scope.Benchmark)
+public class HierarchyState {
+
+  /**
+   * Length of one side of the grid
+   */
+  @Param({"32", "128", "512"})
+  public int size;
+
+  /**
+   * Kind of grid
+   */
+  @Param({"RANDOM", "MAZE"})
+  public GridFiles.Kind kind;
+
+  /**
+   * Whether edge weights are used
+   */
+  @Param({"true", "false"})
+  public boolean weighted;
+
+  /**
+   * The loaded grid
+   */
+  public GridGraph graph;
+
+  /**
+   * Loads the grid and builds its contraction hierarchy
+   *
+   * @throws IOException - If the grid file can not be written or read
+   */
+  @Setup(Level.Trial)
+  public void load() throws IOException {
+    graph = new GridGraph();
+    graph.buildGraph(GridFiles.get(kind, size, 1).toString());
+    graph.buildContractionHierarchy(weighted);
+  }
+}
@@ -0,0 +1,71 @@
+package hw4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of single shortest path queries. The sample time mode reports percentiles, not only the
+ * mean, since query time depends heavily on how far apart the two vertices are. Run with -prof gc to see the
+ * allocation rate: the String result allocates for the formatting, the buffer variant should allocate nothing.
+ */
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class QueryBenchmark {
+
+  /**
+   * Query pairs and a path buffer, one set per benchmark thread
+   */
+  @State(Scope.Thread)
+  public static class Queries extends QueryPairs {
+
+    /**
+     * Picks the pairs for this thread
+     *
+     * @param graph - The grid being queried
+     */
+    @Setup(Level.Trial)
+    public void pick(GraphState graph) {
+      fill(graph.size);
+    }
+  }
+
+  /**
+   * Finds a path and formats it as a String, like the original interface does
+   *
+   * @param graph - The grid being queried
+   * @param queries - This thread's pairs
+   * @return - The path, returned so the work is not optimized away
+   */
+  @Benchmark
+  public String findShortestPath(GraphState graph, Queries queries) {
+    int i = queries.advance();
+    return graph.graph.findShortestPath(queries.sources[i], queries.targets[i], graph.weighted, graph.mode);
+  }
+
+  /**
+   * Finds a path into a reused buffer
+   *
+   * @param graph - The grid being queried
+   * @param queries - This thread's pairs
+   * @return - The number of vertices on the path, returned so the work is not optimized away
+   */
+  @Benchmark
+  public int findPathIntoBuffer(GraphState graph, Queries queries) {
+    int i = queries.advance();
+    return graph.graph.findPath(queries.sources[i], queries.targets[i], graph.weighted, graph.mode, queries.path);
+  }
+}
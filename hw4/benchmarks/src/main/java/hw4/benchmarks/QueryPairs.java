@@ -0,0 +1,57 @@
+package hw4.benchmarks;
+
+/**
+ * Query pairs and a path buffer for one benchmark thread. The query benchmarks extend it with a state whose setup
+ * knows which grid is being queried.
+ */
+
+abstract class QueryPairs {
+
+  /**
+   * Number of query pairs each thread cycles through
+   */
+  static final int PAIRS = 1024;
+
+  /**
+   * Sources of the pairs (one based indices)
+   */
+  int[] sources;
+
+  /**
+   * Targets of the pairs (one based indices)
+   */
+  int[] targets;
+
+  /**
+   * Buffer the buffer variant writes its path into
+   */
+  int[] path;
+
+  /**
+   * Index of the next pair
+   */
+  int next;
+
+  /**
+   * Picks the pairs for the calling thread
+   *
+   * @param size - Length of one side of the grid being queried
+   */
+  void fill(int size) {
+    int[][] pairs = GridFiles.queries(size, PAIRS, Thread.currentThread().getId());
+    sources = pairs[0];
+    targets = pairs[1];
+    path = new int[size * size];
+  }
+
+  /**
+   * Moves to the next pair
+   *
+   * @return - Index of the pair to query
+   */
+  int advance() {
+    int i = next;
+    next = (next + 1) & (PAIRS - 1);
+    return i;
+  }
+}
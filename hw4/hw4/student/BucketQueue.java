@@ -0,0 +1,188 @@
+package hw4.student;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue for Dijkstra's algorithm on graphs with small integer weights (Dial's algorithm). While a search
+ * runs, every queued key lies between the last key polled and that key plus the largest edge weight, so a circular
+ * array with one bucket per possible key is enough. Pushing and lowering a key are O(1) list operations, and
+ * polling walks forward to the next non-empty bucket, so a whole search costs O(E + D) for a largest distance D
+ * instead of O(E log V). The buckets are doubly linked lists threaded through int arrays indexed by vertex, so
+ * nothing is allocated while searching. The number of buckets is a power of two, which turns the modulo into a
+ * mask.
+ */
+
+final class BucketQueue implements MinQueue {
+
+  /**
+   * Largest edge weight the queue is used for. Bigger weights mean more empty buckets to walk past, and a 4-ary heap
+   * is faster then.
+   */
+  static final int MAX_WEIGHT = 1023;
+
+  /**
+   * Marks an empty bucket, the end of a list, or a vertex that is not queued
+   */
+  private static final int NONE = -1;
+
+  /**
+   * First vertex of each bucket, or NONE
+   */
+  private final int[] head;
+
+  /**
+   * Next vertex in the same bucket, or NONE
+   */
+  private final int[] next;
+
+  /**
+   * Previous vertex in the same bucket, or NONE
+   */
+  private final int[] prev;
+
+  /**
+   * Bucket each vertex is in, or NONE if it is not queued
+   */
+  private final int[] bucket;
+
+  /**
+   * Number of buckets minus one, used to map a key to its bucket
+   */
+  private final int mask;
+
+  /**
+   * Bucket of the last key polled, no queued key is in a bucket before it
+   */
+  private int cursor;
+
+  /**
+   * Whether anything was pushed since the queue was created or cleared, the first key pushed places the cursor
+   */
+  private boolean started;
+
+  /**
+   * Number of vertices in the queue
+   */
+  private int count;
+
+  /**
+   * Number of pushes and polls made while counting, only read by the search metrics
+   */
+  long operations;
+
+  /**
+   * Whether operations are counted, only while the search metrics measure a query
+   */
+  boolean counting;
+
+  /**
+   * Creates an empty queue
+   *
+   * @param capacity - The number of vertices the queue must be able to hold
+   * @param maxWeight - The largest edge weight of the graph, at most MAX_WEIGHT
+   */
+  BucketQueue(int capacity, int maxWeight) {
+    int buckets = Integer.highestOneBit(Math.max(maxWeight, 1)) * 2;
+    head = new int[buckets];
+    next = new int[capacity];
+    prev = new int[capacity];
+    bucket = new int[capacity];
+    mask = buckets - 1;
+    Arrays.fill(head, NONE);
+    Arrays.fill(bucket, NONE);
+  }
+
+  /**
+   * Returns the largest edge weight the queue can handle
+   *
+   * @return - The largest edge weight
+   */
+  int maxWeight() {
+    return mask;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * Adds a vertex to the queue, or moves it to the bucket of its lower key. The key must not be smaller than the
+   * last key polled, nor larger than that key plus maxWeight.
+   *
+   * @param v - The vertex to add or update
+   * @param key - The new key of the vertex
+   */
+  @Override
+  public void push(int v, int key) {
+    if (counting) {
+      operations++;
+    }
+    if (bucket[v] != NONE) {
+      unlink(v);
+    } else {
+      count++;
+    }
+    if (!started) {
+      cursor = key & mask;
+      started = true;
+    }
+    int b = key & mask;
+    int first = head[b];
+    next[v] = first;
+    prev[v] = NONE;
+    if (first != NONE) {
+      prev[first] = v;
+    }
+    head[b] = v;
+    bucket[v] = b;
+  }
+
+  @Override
+  public int poll() {
+    if (counting) {
+      operations++;
+    }
+    while (head[cursor] == NONE) {
+      cursor = (cursor + 1) & mask;
+    }
+    int v = head[cursor];
+    unlink(v);
+    bucket[v] = NONE;
+    count--;
+    return v;
+  }
+
+  /**
+   * Removes every vertex from the queue. Only the non-empty buckets are touched.
+   */
+  @Override
+  public void clear() {
+    for (int b = 0; count > 0; b++) {
+      for (int v = head[b]; v != NONE; v = next[v]) {
+        bucket[v] = NONE;
+        count--;
+      }
+      head[b] = NONE;
+    }
+    started = false;
+  }
+
+  /**
+   * Takes a vertex out of its bucket's list
+   *
+   * @param v - A queued vertex
+   */
+  private void unlink(int v) {
+    int before = prev[v];
+    int after = next[v];
+    if (before != NONE) {
+      next[before] = after;
+    } else {
+      head[bucket[v]] = after;
+    }
+    if (after != NONE) {
+      prev[after] = before;
+    }
+  }
+}
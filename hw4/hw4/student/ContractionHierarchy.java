@@ -0,0 +1,642 @@
+package hw4.student;
+
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy of a grid graph. During preprocessing the vertices are contracted one at a time in order of
+ * importance, and whenever removing a vertex would break a shortest path between two of its neighbours a shortcut
+ * edge is added in its place. Each vertex then gets a rank from the contraction order, and a query only has to
+ * follow edges that lead to higher ranked vertices: forwards from the source and backwards from the target. Both
+ * searches meet at the highest ranked vertex of the shortest path, after settling only a small part of the graph.
+ * Every shortcut remembers the two edges it replaces, so paths can be unpacked back into grid vertices.
+ */
+
+final class ContractionHierarchy {
+
+  /**
+   * Largest number of vertices a witness search settles before giving up and adding the shortcut anyway
+   */
+  private static final int WITNESS_SETTLE_LIMIT = 200;
+
+  /**
+   * Smaller settle limit used when only estimating how many shortcuts a contraction would add
+   */
+  private static final int ESTIMATE_SETTLE_LIMIT = 20;
+
+  /**
+   * Whether the hierarchy was built with edge weights or with every edge counting as 1
+   */
+  final boolean weighted;
+
+  /**
+   * Number of vertices in the graph
+   */
+  final int vertices;
+
+  /**
+   * Number of shortcut edges that were added during preprocessing
+   */
+  final int shortcuts;
+
+  /**
+   * Start of the upward edges of each vertex in the up arrays, with one extra entry marking the end
+   */
+  private final int[] upFirst;
+
+  /**
+   * Edge ids of the edges leading to a higher ranked vertex, grouped by the vertex they start at
+   */
+  private final int[] upEdges;
+
+  /**
+   * Start of the downward edges entering each vertex in the down arrays, with one extra entry marking the end
+   */
+  private final int[] downFirst;
+
+  /**
+   * Edge ids of the edges coming from a higher ranked vertex, grouped by the vertex they end at
+   */
+  private final int[] downEdges;
+
+  /**
+   * Vertex each edge starts at
+   */
+  private final int[] edgeFrom;
+
+  /**
+   * Vertex each edge ends at
+   */
+  private final int[] edgeTo;
+
+  /**
+   * Weight of each edge
+   */
+  private final int[] edgeWeight;
+
+  /**
+   * First of the two edges a shortcut replaces, or -1 for an edge of the original graph
+   */
+  private final int[] childA;
+
+  /**
+   * Second of the two edges a shortcut replaces, or -1 for an edge of the original graph
+   */
+  private final int[] childB;
+
+  /**
+   * Creates a hierarchy from the edges and ranks left by the builder
+   *
+   * @param builder - Builder that has contracted every vertex
+   */
+  private ContractionHierarchy(Builder builder) {
+    this.weighted = builder.weighted;
+    this.vertices = builder.n;
+    this.shortcuts = builder.shortcutCount;
+    int edges = builder.edgeCount;
+    this.edgeFrom = Arrays.copyOf(builder.from, edges);
+    this.edgeTo = Arrays.copyOf(builder.to, edges);
+    this.edgeWeight = Arrays.copyOf(builder.weight, edges);
+    this.childA = Arrays.copyOf(builder.childA, edges);
+    this.childB = Arrays.copyOf(builder.childB, edges);
+
+    //Splits the edges into upward edges, stored at their start, and downward edges, stored at their end
+    int[] rank = builder.rank;
+    upFirst = new int[vertices + 1];
+    downFirst = new int[vertices + 1];
+    for (int e = 0; e < edges; e++) {
+      if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+        upFirst[edgeFrom[e] + 1]++;
+      } else {
+        downFirst[edgeTo[e] + 1]++;
+      }
+    }
+    for (int v = 0; v < vertices; v++) {
+      upFirst[v + 1] += upFirst[v];
+      downFirst[v + 1] += downFirst[v];
+    }
+    upEdges = new int[upFirst[vertices]];
+    downEdges = new int[downFirst[vertices]];
+    int[] upFill = Arrays.copyOf(upFirst, vertices);
+    int[] downFill = Arrays.copyOf(downFirst, vertices);
+    for (int e = 0; e < edges; e++) {
+      if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+        upEdges[upFill[edgeFrom[e]]++] = e;
+      } else {
+        downEdges[downFill[edgeTo[e]]++] = e;
+      }
+    }
+  }
+
+  /**
+   * Runs the preprocessing for a graph
+   *
+   * @param adjacency - The graph to preprocess
+   * @param weighted - Whether edge weights should be used or not
+   * @return - The contraction hierarchy of the graph
+   */
+  static ContractionHierarchy build(GridAdjacency adjacency, boolean weighted) {
+    Builder builder = new Builder(adjacency, weighted);
+    builder.contractAll();
+    return new ContractionHierarchy(builder);
+  }
+
+  /**
+   * Finds the shortest path between two vertices with a bidirectional search over the upward and downward edges,
+   * then unpacks the shortcuts on it into grid vertices.
+   *
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param forward - Freshly reset scratch, its backward half is used for the search from the target
+   * @param path - Buffer that receives the vertices of the path (one based indices)
+   * @return - The number of vertices on the path, or GridGraph.UNREACHABLE if there is no path
+   */
+  int findPath(int source, int target, SearchScratch forward, int[] path) {
+    if (source == target) {
+      path[0] = source + 1;
+      return 1;
+    }
+    SearchScratch backward = forward.backward();
+    backward.reset();
+    IndexedMinHeap forwardHeap = forward.heap;
+    IndexedMinHeap backwardHeap = backward.heap;
+    forward.reach(source, 0, 0);
+    backward.reach(target, 0, 0);
+    forwardHeap.insert(source, 0);
+    backwardHeap.insert(target, 0);
+
+    long best = Long.MAX_VALUE;
+    int meet = -1;
+    while (!forwardHeap.isEmpty() || !backwardHeap.isEmpty()) {
+      boolean useForward = backwardHeap.isEmpty()
+          || (!forwardHeap.isEmpty() && forwardHeap.minKey() <= backwardHeap.minKey());
+      IndexedMinHeap heap = useForward ? forwardHeap : backwardHeap;
+
+      //Neither side can improve the best path once its closest vertex is already as far away
+      if (heap.minKey() >= best) {
+        heap.clear();
+        continue;
+      }
+      SearchScratch side = useForward ? forward : backward;
+      SearchScratch other = useForward ? backward : forward;
+      int u = heap.poll();
+      side.settle(u);
+      int du = side.distance(u);
+      int ou = other.distance(u);
+      if (ou != Integer.MAX_VALUE && (long) du + ou < best) {
+        best = (long) du + ou;
+        meet = u;
+      }
+
+      //Stall on demand: if a higher ranked vertex reaches u more cheaply, u is not on a shortest path from here
+      if (isStalled(u, du, side, useForward)) {
+        continue;
+      }
+
+      int[] first = useForward ? upFirst : downFirst;
+      int[] edges = useForward ? upEdges : downEdges;
+      int[] ends = useForward ? edgeTo : edgeFrom;
+      for (int k = first[u]; k < first[u + 1]; k++) {
+        int e = edges[k];
+        int y = ends[e];
+        int candidate = du + edgeWeight[e];
+        if (!side.isSettled(y) && candidate < side.distance(y)) {
+          //The predecessor slot holds the one based id of the edge used to reach the vertex
+          side.reach(y, candidate, e + 1);
+          heap.push(y, candidate);
+        }
+      }
+    }
+    if (meet < 0) {
+      return GridGraph.UNREACHABLE;
+    }
+
+    //Collects the forward edges from the meeting vertex back to the source, then unpacks them in order
+    int[] chain = backward.path();
+    int chainLength = 0;
+    for (int v = meet; v != source; v = edgeFrom[forward.predecessor(v) - 1]) {
+      chain[chainLength++] = forward.predecessor(v) - 1;
+    }
+    int[] stack = forward.stack();
+    int length = 0;
+    path[length++] = source + 1;
+    for (int i = chainLength - 1; i >= 0; i--) {
+      length = unpack(chain[i], path, length, stack);
+    }
+    for (int v = meet; v != target; v = edgeTo[backward.predecessor(v) - 1]) {
+      length = unpack(backward.predecessor(v) - 1, path, length, stack);
+    }
+    return length;
+  }
+
+  /**
+   * Checks if a settled vertex can be reached more cheaply through one of its higher ranked neighbours, using the
+   * edges that point the other way in the hierarchy. Such a vertex is not on any shortest path of this search, so
+   * its edges do not need to be relaxed.
+   *
+   * @param u - The vertex that was just settled
+   * @param du - The distance of the vertex
+   * @param side - Scratch of the search that settled the vertex
+   * @param forward - Whether this is the forward search
+   * @return - True if the vertex can be skipped
+   */
+  private boolean isStalled(int u, int du, SearchScratch side, boolean forward) {
+    int[] first = forward ? downFirst : upFirst;
+    int[] edges = forward ? downEdges : upEdges;
+    int[] ends = forward ? edgeFrom : edgeTo;
+    for (int k = first[u]; k < first[u + 1]; k++) {
+      int e = edges[k];
+      int dw = side.distance(ends[e]);
+      if (dw != Integer.MAX_VALUE && (long) dw + edgeWeight[e] < du) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Appends the grid vertices reached by an edge to a path, replacing shortcuts by the edges they stand for. An
+   * explicit stack is used since shortcuts can be nested very deeply on large grids. Every entry on the stack stands
+   * for at least one grid edge of the path still to come, and a shortest path has fewer edges than there are
+   * vertices, so a stack with one slot per vertex never overflows.
+   *
+   * @param edge - The edge to unpack
+   * @param path - The path being built (one based indices)
+   * @param length - Number of vertices already on the path
+   * @param stack - Work stack with one slot per vertex
+   * @return - The new number of vertices on the path
+   */
+  private int unpack(int edge, int[] path, int length, int[] stack) {
+    int top = 0;
+    stack[top++] = edge;
+    while (top > 0) {
+      int e = stack[--top];
+      if (childA[e] < 0) {
+        if (length == path.length) {
+          throw new IllegalArgumentException("The path does not fit in a buffer of " + path.length + " vertices");
+        }
+        path[length++] = edgeTo[e] + 1;
+      } else {
+        //The second half goes on the stack first so the first half is unpacked first
+        stack[top++] = childB[e];
+        stack[top++] = childA[e];
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Mutable state used while contracting the vertices. Edges live in growable parallel arrays, and every vertex
+   * keeps lists of the ids of its outgoing and incoming edges.
+   */
+  private static final class Builder {
+
+    /**
+     * Whether edge weights are used or not
+     */
+    final boolean weighted;
+
+    /**
+     * Number of vertices
+     */
+    final int n;
+
+    /**
+     * Number of edges created so far, original and shortcut
+     */
+    int edgeCount;
+
+    /**
+     * Number of shortcuts created so far
+     */
+    int shortcutCount;
+
+    /**
+     * Parallel arrays describing every edge
+     */
+    int[] from;
+    int[] to;
+    int[] weight;
+    int[] childA;
+    int[] childB;
+
+    /**
+     * Outgoing and incoming edge ids of every vertex, with their counts
+     */
+    final int[][] out;
+    final int[][] in;
+    final int[] outCount;
+    final int[] inCount;
+
+    /**
+     * Whether each vertex has been contracted
+     */
+    final boolean[] contracted;
+
+    /**
+     * Level of each vertex in the hierarchy: one more than the highest level of its contracted neighbours. Using it
+     * in the priority spreads the contraction evenly over the grid, which keeps the hierarchy shallow.
+     */
+    final int[] level;
+
+    /**
+     * Position of each vertex in the contraction order
+     */
+    final int[] rank;
+
+    /**
+     * Scratch for the witness searches
+     */
+    final SearchScratch witness;
+
+    /**
+     * Copies the edges of the grid into the builder
+     *
+     * @param adjacency - The graph to preprocess
+     * @param weighted - Whether edge weights should be used or not
+     */
+    Builder(GridAdjacency adjacency, boolean weighted) {
+      this.weighted = weighted;
+      this.n = adjacency.vertices;
+      int capacity = Math.max(16, adjacency.weights.length);
+      from = new int[capacity];
+      to = new int[capacity];
+      weight = new int[capacity];
+      childA = new int[capacity];
+      childB = new int[capacity];
+      out = new int[n][];
+      in = new int[n][];
+      outCount = new int[n];
+      inCount = new int[n];
+      contracted = new boolean[n];
+      level = new int[n];
+      rank = new int[n];
+      witness = new SearchScratch(n);
+      for (int v = 0; v < n; v++) {
+        for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+          int w = adjacency.weights[v * GridAdjacency.DIRECTIONS + dir];
+          if (w > 0) {
+            addEdge(v, v + adjacency.offsets[dir], weighted ? w : 1, -1, -1);
+          }
+        }
+      }
+    }
+
+    /**
+     * Contracts every vertex, always picking the one with the lowest priority. Priorities are updated lazily: a
+     * vertex whose priority went up since it was queued goes back into the queue instead of being contracted, and
+     * the neighbours of a contracted vertex only get a cheap level bump instead of a full recount.
+     */
+    void contractAll() {
+      IndexedMinHeap queue = new IndexedMinHeap(n);
+      for (int v = 0; v < n; v++) {
+        queue.insert(v, priority(v));
+      }
+      int order = 0;
+      while (!queue.isEmpty()) {
+        int v = queue.poll();
+        int p = priority(v);
+        if (!queue.isEmpty() && p > queue.minKey()) {
+          queue.insert(v, p);
+          continue;
+        }
+        contract(v, true);
+        contracted[v] = true;
+        rank[v] = order++;
+        for (int k = 0; k < outCount[v]; k++) {
+          touch(to[out[v][k]], level[v] + 1, queue);
+        }
+        for (int k = 0; k < inCount[v]; k++) {
+          touch(from[in[v][k]], level[v] + 1, queue);
+        }
+        detach(v);
+      }
+    }
+
+    /**
+     * Raises the level of a neighbour of a vertex that was just contracted, and its priority with it
+     *
+     * @param y - The neighbour
+     * @param minLevel - The lowest level the neighbour may have now
+     * @param queue - The contraction queue
+     */
+    private void touch(int y, int minLevel, IndexedMinHeap queue) {
+      if (!contracted[y] && level[y] < minLevel) {
+        queue.changeKey(y, queue.key(y) + 2 * (minLevel - level[y]));
+        level[y] = minLevel;
+      }
+    }
+
+    /**
+     * Removes the edges of a contracted vertex from the lists of its neighbours, so later witness searches and
+     * priority updates do not keep skipping over them
+     *
+     * @param v - The vertex that was just contracted
+     */
+    private void detach(int v) {
+      for (int k = 0; k < outCount[v]; k++) {
+        int e = out[v][k];
+        int y = to[e];
+        inCount[y] = remove(in[y], inCount[y], e);
+      }
+      for (int k = 0; k < inCount[v]; k++) {
+        int e = in[v][k];
+        int y = from[e];
+        outCount[y] = remove(out[y], outCount[y], e);
+      }
+    }
+
+    /**
+     * Removes a value from an unordered list by moving the last value into its place
+     *
+     * @param list - The list
+     * @param count - Number of values in the list
+     * @param value - The value to remove
+     * @return - The new number of values in the list
+     */
+    private static int remove(int[] list, int count, int value) {
+      for (int k = 0; k < count; k++) {
+        if (list[k] == value) {
+          list[k] = list[count - 1];
+          return count - 1;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Computes the priority of a vertex: the shortcuts its contraction would add minus the edges it would remove,
+     * plus its level, both counted twice
+     *
+     * @param v - The vertex
+     * @return - The priority, lower is contracted sooner
+     */
+    private int priority(int v) {
+      int degree = 0;
+      for (int k = 0; k < outCount[v]; k++) {
+        if (!contracted[to[out[v][k]]]) {
+          degree++;
+        }
+      }
+      for (int k = 0; k < inCount[v]; k++) {
+        if (!contracted[from[in[v][k]]]) {
+          degree++;
+        }
+      }
+      return 2 * (contract(v, false) - degree) + 2 * level[v];
+    }
+
+    /**
+     * Finds the shortcuts needed to remove a vertex. For every incoming neighbour u a witness search looks for paths
+     * to the outgoing neighbours that avoid the vertex, and a shortcut is needed for every neighbour that the
+     * search can not reach at least as cheaply.
+     *
+     * @param v - The vertex to contract
+     * @param apply - Whether to add the shortcuts or only count them
+     * @return - The number of shortcuts needed
+     */
+    private int contract(int v, boolean apply) {
+      int needed = 0;
+      for (int i = 0; i < inCount[v]; i++) {
+        int e1 = in[v][i];
+        int u = from[e1];
+        if (contracted[u]) {
+          continue;
+        }
+        int maxOut = 0;
+        for (int k = 0; k < outCount[v]; k++) {
+          int e2 = out[v][k];
+          int x = to[e2];
+          if (x != u && !contracted[x]) {
+            maxOut = Math.max(maxOut, weight[e2]);
+          }
+        }
+        if (maxOut == 0) {
+          continue;
+        }
+        witnessSearch(u, v, weight[e1] + maxOut, apply ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+        for (int k = 0; k < outCount[v]; k++) {
+          int e2 = out[v][k];
+          int x = to[e2];
+          if (x == u || contracted[x]) {
+            continue;
+          }
+          int via = weight[e1] + weight[e2];
+          if (witness.distance(x) > via) {
+            needed++;
+            if (apply) {
+              addShortcut(u, x, via, e1, e2);
+            }
+          }
+        }
+      }
+      return needed;
+    }
+
+    /**
+     * Runs a small Dijkstra search from u that avoids the vertex being contracted and every contracted vertex.
+     * It stops once the distances pass maxCost or the settle limit is reached, leaving the distances found in the
+     * witness scratch. Any distance found there is the length of a real path that avoids the vertex.
+     *
+     * @param u - Start of the search
+     * @param skip - The vertex being contracted
+     * @param maxCost - Distance after which no witness can help anymore
+     * @param limit - Largest number of vertices to settle
+     */
+    private void witnessSearch(int u, int skip, int maxCost, int limit) {
+      witness.reset();
+      IndexedMinHeap heap = witness.heap;
+      witness.reach(u, 0, 0);
+      heap.insert(u, 0);
+      int settledCount = 0;
+      while (!heap.isEmpty() && heap.minKey() <= maxCost && settledCount < limit) {
+        int x = heap.poll();
+        witness.settle(x);
+        settledCount++;
+        int dx = witness.distance(x);
+        for (int k = 0; k < outCount[x]; k++) {
+          int e = out[x][k];
+          int y = to[e];
+          if (y == skip || contracted[y] || witness.isSettled(y)) {
+            continue;
+          }
+          int candidate = dx + weight[e];
+          if (candidate < witness.distance(y)) {
+            witness.reach(y, candidate, 0);
+            heap.push(y, candidate);
+          }
+        }
+      }
+    }
+
+    /**
+     * Adds a shortcut from u to x, or lowers the weight of the edge from u to x if there already is one
+     *
+     * @param u - Start of the shortcut
+     * @param x - End of the shortcut
+     * @param w - Weight of the shortcut
+     * @param a - First edge the shortcut replaces
+     * @param b - Second edge the shortcut replaces
+     */
+    private void addShortcut(int u, int x, int w, int a, int b) {
+      for (int k = 0; k < outCount[u]; k++) {
+        int e = out[u][k];
+        if (to[e] == x) {
+          if (weight[e] > w) {
+            weight[e] = w;
+            childA[e] = a;
+            childB[e] = b;
+          }
+          return;
+        }
+      }
+      addEdge(u, x, w, a, b);
+      shortcutCount++;
+    }
+
+    /**
+     * Appends an edge to the edge arrays and to the lists of both of its vertices
+     *
+     * @param u - Start of the edge
+     * @param x - End of the edge
+     * @param w - Weight of the edge
+     * @param a - First replaced edge, -1 for an original edge
+     * @param b - Second replaced edge, -1 for an original edge
+     */
+    private void addEdge(int u, int x, int w, int a, int b) {
+      if (edgeCount == from.length) {
+        int capacity = edgeCount + (edgeCount >> 1);
+        from = Arrays.copyOf(from, capacity);
+        to = Arrays.copyOf(to, capacity);
+        weight = Arrays.copyOf(weight, capacity);
+        childA = Arrays.copyOf(childA, capacity);
+        childB = Arrays.copyOf(childB, capacity);
+      }
+      int e = edgeCount++;
+      from[e] = u;
+      to[e] = x;
+      weight[e] = w;
+      childA[e] = a;
+      childB[e] = b;
+      out[u] = append(out[u], outCount[u]++, e);
+      in[x] = append(in[x], inCount[x]++, e);
+    }
+
+    /**
+     * Stores a value in a growable list
+     *
+     * @param list - The list, or null if it has not been created yet
+     * @param index - Where to store the value
+     * @param value - The value to store
+     * @return - The list, grown if it was full
+     */
+    private static int[] append(int[] list, int index, int value) {
+      if (list == null) {
+        list = new int[4];
+      } else if (index == list.length) {
+        list = Arrays.copyOf(list, list.length * 2);
+      }
+      list[index] = value;
+      return list;
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package hw4.student;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel single source shortest paths by delta-stepping. Vertices are grouped into buckets of width delta by their
+ * tentative distance, and all the vertices of the lowest non-empty bucket are relaxed at once, split into chunks
+ * that run in parallel on a fork-join pool. Vertices whose distance improves go into the bucket of their new
+ * distance, which may be the current one again. A vertex can be relaxed more than once, but the work stays close to
+ * Dijkstra's algorithm as long as delta is not much larger than a typical edge weight.
+ *
+ * The distance and predecessor of every vertex are packed into one long, distance in the high half, so a single
+ * compare-and-set updates both and they always belong together. Each chunk collects the vertices it improves in its
+ * own buckets, so no locks are needed while relaxing, and the chunks' buckets are joined into the next frontier in
+ * between rounds.
+ *
+ * A vertex improved while relaxing bucket b lands at most maxWeight / delta + 1 buckets further on, so the buckets
+ * are kept in a ring of maxWeight / delta + 2 slots that is reused as the search moves on. The ring is capped at
+ * MAX_BUCKETS slots. A delta too small for that is widened until the ring fits, which relaxes fewer buckets with more
+ * vertices each but gives the same distances, so a small delta with heavy weights does not allocate buckets without
+ * bound.
+ */
+
+final class DeltaStepping {
+
+  /**
+   * Frontiers smaller than this are relaxed in the calling thread, since splitting them costs more than it saves
+   */
+  private static final int PARALLEL_THRESHOLD = 2048;
+
+  /**
+   * Number of chunks per worker thread a large frontier is split into, so uneven chunks balance out
+   */
+  private static final int CHUNKS_PER_WORKER = 4;
+
+  /**
+   * Largest number of bucket slots in the ring of each chunk
+   */
+  private static final int MAX_BUCKETS = 1024;
+
+  /**
+   * Packed state of a vertex that has not been reached: the largest distance and no predecessor
+   */
+  private static final long UNREACHED = (long) Integer.MAX_VALUE << 32;
+
+  /**
+   * The graph being searched
+   */
+  private final GridAdjacency adjacency;
+
+  /**
+   * Whether edge weights are used or every edge counts as 1
+   */
+  private final boolean weighted;
+
+  /**
+   * Width of a bucket
+   */
+  private final int delta;
+
+  /**
+   * Number of slots in the bucket ring of each chunk
+   */
+  private final int slots;
+
+  /**
+   * Distance (high 32 bits) and one based predecessor (low 32 bits) of every vertex
+   */
+  private final AtomicLongArray state;
+
+  /**
+   * Buckets of vertices each chunk improved, one set per chunk
+   */
+  private final Buckets[] chunkBuckets;
+
+  /**
+   * Vertices of the bucket being relaxed
+   */
+  private int[] frontier;
+
+  /**
+   * Number of vertices in the frontier
+   */
+  private int frontierSize;
+
+  /**
+   * Index of the bucket being relaxed
+   */
+  private int current;
+
+  /**
+   * Creates the state for one search
+   *
+   * @param adjacency - The graph to search
+   * @param weighted - Whether edge weights should be used or not
+   * @param delta - Width of a bucket, widened if the ring would need more than MAX_BUCKETS slots
+   * @param chunks - Largest number of chunks a frontier is split into
+   */
+  private DeltaStepping(GridAdjacency adjacency, boolean weighted, int delta, int chunks) {
+    this.adjacency = adjacency;
+    this.weighted = weighted;
+    int maxCost = weighted ? adjacency.maxWeight : 1;
+    this.delta = Math.max(delta, (int) ((maxCost + (long) MAX_BUCKETS - 3) / (MAX_BUCKETS - 2)));
+    this.slots = maxCost / this.delta + 2;
+    this.state = new AtomicLongArray(adjacency.vertices);
+    this.chunkBuckets = new Buckets[chunks];
+    for (int c = 0; c < chunks; c++) {
+      chunkBuckets[c] = new Buckets(slots);
+    }
+    this.frontier = new int[16];
+  }
+
+  /**
+   * Picks a bucket width for a graph. A bucket as wide as the average edge weight keeps about one grid step of the
+   * wavefront in each bucket, which gives wide frontiers without relaxing vertices many times over.
+   *
+   * @param adjacency - The graph
+   * @param weighted - Whether edge weights are used
+   * @return - The bucket width
+   */
+  static int defaultDelta(GridAdjacency adjacency, boolean weighted) {
+    if (!weighted) {
+      return 1;
+    }
+    return Math.max(1, (adjacency.minWeight + adjacency.maxWeight) / 2);
+  }
+
+  /**
+   * Computes the shortest path tree of a source vertex
+   *
+   * @param adjacency - The graph to search
+   * @param source - Source vertex (zero based index)
+   * @param weighted - Whether edge weights should be used or not
+   * @param delta - Width of a bucket, at least 1. It is widened if the edge weights would need more than MAX_BUCKETS
+   * buckets of it at once.
+   * @param pool - Pool the relaxations run on
+   * @return - The distance and predecessor of every vertex
+   */
+  static ShortestPathTree run(GridAdjacency adjacency, int source, boolean weighted, int delta, ForkJoinPool pool) {
+    if (delta < 1) {
+      throw new IllegalArgumentException("Bucket width must be at least 1, got " + delta);
+    }
+    DeltaStepping search = new DeltaStepping(adjacency, weighted, delta,
+        pool.getParallelism() * CHUNKS_PER_WORKER);
+    search.solve(source, pool);
+    return search.toTree(source, pool);
+  }
+
+  /**
+   * Relaxes bucket after bucket until no bucket holds any vertex
+   *
+   * @param source - Source vertex (zero based index)
+   * @param pool - Pool the relaxations run on
+   */
+  private void solve(int source, ForkJoinPool pool) {
+    forEachVertex(pool, v -> state.set(v, UNREACHED));
+    state.set(source, 0);
+    frontier[0] = source;
+    frontierSize = 1;
+    current = 0;
+    while (true) {
+      if (frontierSize < PARALLEL_THRESHOLD) {
+        relax(0, frontierSize, chunkBuckets[0]);
+      } else {
+        pool.invoke(new RelaxTask(0, chunkBuckets.length));
+      }
+      if (!nextFrontier()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Relaxes the edges of part of the frontier. Entries whose vertex has since moved to a lower bucket were already
+   * relaxed from there and are skipped.
+   *
+   * @param from - First frontier index to relax
+   * @param to - One past the last frontier index to relax
+   * @param buckets - Buckets that receive the improved vertices
+   */
+  private void relax(int from, int to, Buckets buckets) {
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+    long bucketStart = (long) current * delta;
+    for (int k = from; k < to; k++) {
+      int u = frontier[k];
+      int du = (int) (state.get(u) >>> 32);
+      if (du < bucketStart) {
+        continue;
+      }
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int weight = weights[u * GridAdjacency.DIRECTIONS + dir];
+        if (weight == 0) {
+          continue;
+        }
+        int j = u + offsets[dir];
+        int candidate = du + (weighted ? weight : 1);
+        long packed = ((long) candidate << 32) | (u + 1);
+        long old = state.get(j);
+        while ((int) (old >>> 32) > candidate) {
+          if (state.compareAndSet(j, old, packed)) {
+            buckets.add(candidate / delta, j);
+            break;
+          }
+          old = state.get(j);
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves the lowest non-empty bucket of all chunks into the frontier
+   *
+   * @return - False if every bucket is empty and the search is done
+   */
+  private boolean nextFrontier() {
+    //Every vertex waiting lies in the ring from the current bucket on, and the scan only moves as far as the search
+    int next = Integer.MAX_VALUE;
+    for (int b = current; b < current + slots && next == Integer.MAX_VALUE; b++) {
+      for (Buckets buckets : chunkBuckets) {
+        if (buckets.size(b) > 0) {
+          next = b;
+          break;
+        }
+      }
+    }
+    if (next == Integer.MAX_VALUE) {
+      return false;
+    }
+    int total = 0;
+    for (Buckets buckets : chunkBuckets) {
+      total += buckets.size(next);
+    }
+    if (frontier.length < total) {
+      frontier = new int[Math.max(total, frontier.length * 2)];
+    }
+    frontierSize = 0;
+    for (Buckets buckets : chunkBuckets) {
+      frontierSize = buckets.drain(next, frontier, frontierSize);
+    }
+    current = next;
+    return true;
+  }
+
+  /**
+   * Unpacks the distances and predecessors into a shortest path tree
+   *
+   * @param source - Source vertex (zero based index)
+   * @param pool - Pool the unpacking runs on
+   * @return - The shortest path tree
+   */
+  private ShortestPathTree toTree(int source, ForkJoinPool pool) {
+    int n = state.length();
+    int[] distance = new int[n];
+    int[] predecessor = new int[n];
+    forEachVertex(pool, v -> {
+      long packed = state.get(v);
+      distance[v] = (int) (packed >>> 32);
+      predecessor[v] = (int) packed;
+    });
+    return new ShortestPathTree(source + 1, weighted, distance, predecessor);
+  }
+
+  /**
+   * Runs an action for every vertex in parallel on a pool
+   *
+   * @param pool - The pool to run on
+   * @param action - The action, given the zero based index of each vertex
+   */
+  private void forEachVertex(ForkJoinPool pool, IntConsumer action) {
+    //A parallel stream started from inside a pool task runs its work on that pool
+    pool.submit(() -> IntStream.range(0, state.length()).parallel().forEach(action)).join();
+  }
+
+  /**
+   * Relaxes a range of frontier chunks, splitting the range in half until a single chunk is left
+   */
+  private final class RelaxTask extends RecursiveAction {
+
+    /**
+     * Version of the serialized form, tasks are never serialized but RecursiveAction is Serializable
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * First chunk of the range
+     */
+    private final int first;
+
+    /**
+     * One past the last chunk of the range
+     */
+    private final int last;
+
+    /**
+     * Creates a task for a range of chunks
+     *
+     * @param first - First chunk of the range
+     * @param last - One past the last chunk of the range
+     */
+    RelaxTask(int first, int last) {
+      this.first = first;
+      this.last = last;
+    }
+
+    @Override
+    protected void compute() {
+      if (last - first > 1) {
+        int middle = (first + last) >>> 1;
+        invokeAll(new RelaxTask(first, middle), new RelaxTask(middle, last));
+        return;
+      }
+      int chunks = chunkBuckets.length;
+      int from = (int) ((long) frontierSize * first / chunks);
+      int to = (int) ((long) frontierSize * last / chunks);
+      relax(from, to, chunkBuckets[first]);
+    }
+  }
+
+  /**
+   * Growable lists of vertices indexed by bucket, owned by a single chunk so no synchronization is needed. Bucket b
+   * is kept in slot b % slots of a ring, which is safe as only the buckets from the current one to slots - 1 further
+   * on ever hold vertices.
+   */
+  private static final class Buckets {
+
+    /**
+     * Number of slots in the ring
+     */
+    private final int slots;
+
+    /**
+     * Vertices in each slot
+     */
+    private final int[][] lists;
+
+    /**
+     * Number of vertices in each slot
+     */
+    private final int[] sizes;
+
+    /**
+     * Array of a drained bucket, kept to be reused by the next new bucket
+     */
+    private int[] spare;
+
+    /**
+     * Creates empty buckets
+     *
+     * @param slots - Number of slots in the ring
+     */
+    Buckets(int slots) {
+      this.slots = slots;
+      lists = new int[slots][];
+      sizes = new int[slots];
+    }
+
+    /**
+     * Adds a vertex to a bucket
+     *
+     * @param bucket - Index of the bucket
+     * @param v - The vertex (zero based index)
+     */
+    void add(int bucket, int v) {
+      int slot = bucket % slots;
+      int[] list = lists[slot];
+      if (list == null) {
+        list = spare != null ? spare : new int[16];
+        spare = null;
+        lists[slot] = list;
+      } else if (sizes[slot] == list.length) {
+        list = Arrays.copyOf(list, list.length * 2);
+        lists[slot] = list;
+      }
+      list[sizes[slot]++] = v;
+    }
+
+    /**
+     * Returns the number of vertices in a bucket
+     *
+     * @param bucket - Index of the bucket
+     * @return - The number of vertices in it
+     */
+    int size(int bucket) {
+      return sizes[bucket % slots];
+    }
+
+    /**
+     * Copies a bucket into an array and empties it. The array of the bucket is kept as the spare for a later bucket.
+     *
+     * @param bucket - Index of the bucket
+     * @param target - Array receiving the vertices
+     * @param offset - Index in the array to copy to
+     * @return - The index just after the copied vertices
+     */
+    int drain(int bucket, int[] target, int offset) {
+      int slot = bucket % slots;
+      int count = sizes[slot];
+      if (count > 0) {
+        System.arraycopy(lists[slot], 0, target, offset, count);
+        sizes[slot] = 0;
+        if (spare == null || spare.length < lists[slot].length) {
+          spare = lists[slot];
+        }
+        lists[slot] = null;
+      }
+      return offset + count;
+    }
+  }
+}
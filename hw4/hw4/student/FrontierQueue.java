@@ -0,0 +1,163 @@
+package hw4.student;
+
+/**
+ * Hands the progress of a search over from the thread running it to the thread drawing it. The search side never
+ * waits for the drawing side. Each vertex keeps its latest state in one byte, and a vertex is queued only when its
+ * state moves up, from unseen to relaxed or from relaxed to settled, so a vertex relaxed over and over is queued
+ * once. The queue has a fixed capacity. When more vertices change between two takes than it holds, the queue stops
+ * growing and tells the drawing side to redraw from the states instead.
+ *
+ * The queue is double buffered. The search side fills one buffer while the drawing side copies out the other, and a
+ * take only swaps the two under the lock, so the search side never waits for a copy.
+ */
+
+final class FrontierQueue implements SearchListener {
+
+  /**
+   * States of a vertex, 0 for a vertex the search has not reached
+   */
+  static final byte RELAXED = 1;
+  static final byte SETTLED = 2;
+
+  /**
+   * Largest number of vertices queued between two takes
+   */
+  static final int CAPACITY = 1 << 16;
+
+  /**
+   * Latest state of each vertex. Only the search side writes it, and a state only ever moves up, so the drawing side
+   * may read it at any time and at worst sees a state that is about to be queued again.
+   */
+  private final byte[] states;
+
+  /**
+   * Buffer the search side queues vertices whose state moved up into (zero based indices)
+   */
+  private int[] filling = new int[CAPACITY];
+
+  /**
+   * Buffer handed to the drawing side by the last take, only the drawing side touches it until the next take
+   */
+  private int[] draining = new int[CAPACITY];
+
+  /**
+   * Number of vertices queued in the filling buffer
+   */
+  private int size;
+
+  /**
+   * Whether vertices were left out of the queue since the last take because it was full
+   */
+  private boolean overflowed;
+
+  /**
+   * The path found, or null while the search is running
+   */
+  private volatile int[] path;
+
+  /**
+   * Creates the queue for a search over a graph
+   *
+   * @param vertices - The number of vertices of the graph
+   */
+  FrontierQueue(int vertices) {
+    states = new byte[vertices];
+  }
+
+  /**
+   * Queues vertices that were settled
+   *
+   * @param vertices - The settled vertices (one based indices)
+   * @param count - The number of vertices in the array that belong to this batch
+   */
+  @Override
+  public synchronized void settled(int[] vertices, int count) {
+    raise(vertices, count, SETTLED);
+  }
+
+  /**
+   * Queues vertices that were relaxed
+   *
+   * @param vertices - The relaxed vertices (one based indices)
+   * @param count - The number of vertices in the array that belong to this batch
+   */
+  @Override
+  public synchronized void relaxed(int[] vertices, int count) {
+    raise(vertices, count, RELAXED);
+  }
+
+  /**
+   * Records the path once the search is done
+   *
+   * @param found - The vertices of the path found (one based indices), or GridGraph.NO_PATH if there is none
+   */
+  @Override
+  public void finished(int[] found) {
+    path = found;
+  }
+
+  /**
+   * Moves vertices up to a state and queues the ones that were below it
+   *
+   * @param vertices - The vertices (one based indices)
+   * @param count - The number of vertices to use
+   * @param state - RELAXED or SETTLED
+   */
+  private void raise(int[] vertices, int count, byte state) {
+    for (int i = 0; i < count; i++) {
+      int v = vertices[i] - 1;
+      if (states[v] < state) {
+        states[v] = state;
+        if (size < CAPACITY) {
+          filling[size++] = v;
+        } else {
+          overflowed = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes the vertices queued since the last take and empties the queue. Only the buffers are swapped while holding
+   * the lock, the vertices are copied after it is released. Only the drawing side may call this.
+   *
+   * @param into - Receives the vertices (zero based indices), needs room for CAPACITY of them
+   * @return - The number of vertices taken, or -1 if some did not fit in the queue and every vertex has to be
+   * redrawn from its state
+   */
+  int take(int[] into) {
+    int[] taken;
+    int count;
+    synchronized (this) {
+      taken = filling;
+      filling = draining;
+      draining = taken;
+      count = overflowed ? -1 : size;
+      size = 0;
+      overflowed = false;
+    }
+    if (count > 0) {
+      System.arraycopy(taken, 0, into, 0, count);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the latest state of a vertex
+   *
+   * @param v - The vertex (zero based index)
+   * @return - 0 if the search has not reached it, otherwise RELAXED or SETTLED
+   */
+  byte state(int v) {
+    return states[v];
+  }
+
+  /**
+   * Returns the path found. Once this is not null, every vertex the search reported has been queued.
+   *
+   * @return - The path (one based indices), GridGraph.NO_PATH if there is none, or null while the search is running
+   */
+  int[] path() {
+    return path;
+  }
+}
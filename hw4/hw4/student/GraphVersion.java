@@ -0,0 +1,155 @@
+package hw4.student;
+
+/**
+ * One published version of a grid graph: the edge weights and everything derived from them. Nothing in a version
+ * changes once it has been published. Rebuilding the graph, changing weights or adding a hierarchy makes a new
+ * version, and GridGraph swaps it in with a single reference write. A query reads the current version once and
+ * runs entirely on it, so a reload never shows up halfway through a query. The only parts filled in later are the
+ * tree cache, which is internally synchronized, and the jump point runs, which are built on first use. Both only
+ * ever describe this version's weights.
+ */
+
+final class GraphVersion {
+
+  /**
+   * The edge weights, never changed after publishing
+   */
+  final GridAdjacency adjacency;
+
+  /**
+   * Cache of shortest path trees over these weights, or null if tree caching is turned off
+   */
+  final ShortestPathTreeCache treeCache;
+
+  /**
+   * Contraction hierarchies for weighted and for unweighted queries, or null if they have not been built
+   */
+  final ContractionHierarchy weightedHierarchy;
+  final ContractionHierarchy unweightedHierarchy;
+
+  /**
+   * Landmark tables for weighted and for unweighted ALT queries, or null if they have not been built
+   */
+  final LandmarkTable weightedLandmarks;
+  final LandmarkTable unweightedLandmarks;
+
+  /**
+   * Horizontal runs for jump point search, or null until the first jump point query
+   */
+  private volatile int[] jumpRuns;
+
+  /**
+   * Creates a version with no hierarchies or landmark tables
+   *
+   * @param adjacency - The edge weights, which must not be changed afterwards
+   * @param treeCache - Cache for trees over these weights, or null to turn tree caching off
+   */
+  GraphVersion(GridAdjacency adjacency, ShortestPathTreeCache treeCache) {
+    this(adjacency, treeCache, null, null, null, null);
+  }
+
+  /**
+   * Creates a version
+   *
+   * @param adjacency - The edge weights, which must not be changed afterwards
+   * @param treeCache - Cache for trees over these weights, or null to turn tree caching off
+   * @param weightedHierarchy - Hierarchy for weighted queries, or null
+   * @param unweightedHierarchy - Hierarchy for unweighted queries, or null
+   * @param weightedLandmarks - Landmark tables for weighted queries, or null
+   * @param unweightedLandmarks - Landmark tables for unweighted queries, or null
+   */
+  private GraphVersion(GridAdjacency adjacency, ShortestPathTreeCache treeCache,
+                       ContractionHierarchy weightedHierarchy, ContractionHierarchy unweightedHierarchy,
+                       LandmarkTable weightedLandmarks, LandmarkTable unweightedLandmarks) {
+    this.adjacency = adjacency;
+    this.treeCache = treeCache;
+    this.weightedHierarchy = weightedHierarchy;
+    this.unweightedHierarchy = unweightedHierarchy;
+    this.weightedLandmarks = weightedLandmarks;
+    this.unweightedLandmarks = unweightedLandmarks;
+  }
+
+  /**
+   * Makes a copy of this version with another tree cache
+   *
+   * @param cache - The new cache, or null to turn tree caching off
+   * @return - The new version
+   */
+  GraphVersion withTreeCache(ShortestPathTreeCache cache) {
+    return new GraphVersion(adjacency, cache, weightedHierarchy, unweightedHierarchy, weightedLandmarks,
+        unweightedLandmarks);
+  }
+
+  /**
+   * Makes a copy of this version with a contraction hierarchy added
+   *
+   * @param hierarchy - The hierarchy, built over this version's weights
+   * @return - The new version
+   */
+  GraphVersion withHierarchy(ContractionHierarchy hierarchy) {
+    return hierarchy.weighted
+        ? new GraphVersion(adjacency, treeCache, hierarchy, unweightedHierarchy, weightedLandmarks, unweightedLandmarks)
+        : new GraphVersion(adjacency, treeCache, weightedHierarchy, hierarchy, weightedLandmarks, unweightedLandmarks);
+  }
+
+  /**
+   * Makes a copy of this version with landmark tables added
+   *
+   * @param table - The landmark tables, valid for this version's weights
+   * @return - The new version
+   */
+  GraphVersion withLandmarks(LandmarkTable table) {
+    return table.weighted
+        ? new GraphVersion(adjacency, treeCache, weightedHierarchy, unweightedHierarchy, table, unweightedLandmarks)
+        : new GraphVersion(adjacency, treeCache, weightedHierarchy, unweightedHierarchy, weightedLandmarks, table);
+  }
+
+  /**
+   * Makes the version that follows an edge weight change. Hierarchies are dropped since their shortcuts bake in the
+   * old weights. Landmark tables stay valid lower bounds as long as no edge got lighter or was added.
+   *
+   * @param changed - The changed edge weights
+   * @param cache - Cache holding the trees repaired for the new weights, or null if tree caching is off
+   * @param keepLandmarks - Whether the landmark tables are still valid
+   * @return - The new version
+   */
+  GraphVersion withWeights(GridAdjacency changed, ShortestPathTreeCache cache, boolean keepLandmarks) {
+    return new GraphVersion(changed, cache, null, null, keepLandmarks ? weightedLandmarks : null,
+        keepLandmarks ? unweightedLandmarks : null);
+  }
+
+  /**
+   * Returns the contraction hierarchy for a kind of query
+   *
+   * @param weighted - Whether edge weights are used or not
+   * @return - The hierarchy, or null if it has not been built
+   */
+  ContractionHierarchy hierarchy(boolean weighted) {
+    return weighted ? weightedHierarchy : unweightedHierarchy;
+  }
+
+  /**
+   * Returns the horizontal runs for jump point search, building them on first use. Two threads may both build them
+   * at first, which wastes a little work but gives the same table.
+   *
+   * @return - The runs, see JumpPointSearch.buildRuns
+   */
+  int[] jumpRuns() {
+    int[] runs = jumpRuns;
+    if (runs == null) {
+      runs = JumpPointSearch.buildRuns(adjacency);
+      jumpRuns = runs;
+    }
+    return runs;
+  }
+
+  /**
+   * Returns the landmark tables for a kind of query
+   *
+   * @param weighted - Whether edge weights are used or not
+   * @return - The landmark tables, or null if they have not been built
+   */
+  LandmarkTable landmarks(boolean weighted) {
+    return weighted ? weightedLandmarks : unweightedLandmarks;
+  }
+}
@@ -0,0 +1,245 @@
+package hw4.student;
+
+/**
+ * Compact adjacency store for a size x size grid graph. Vertices are stored row major, so the zero based vertex
+ * i sits at row i / size and column i % size, and can only be connected to its four grid neighbours. Instead of a
+ * V x V matrix, every vertex keeps one weight slot per direction, which keeps memory at O(V).
+ */
+
+final class GridAdjacency {
+
+  /**
+   * Direction towards vertex i + 1 (same row, next column)
+   */
+  static final int RIGHT = 0;
+
+  /**
+   * Direction towards vertex i - 1 (same row, previous column)
+   */
+  static final int LEFT = 1;
+
+  /**
+   * Direction towards vertex i + size (next row, same column)
+   */
+  static final int DOWN = 2;
+
+  /**
+   * Direction towards vertex i - size (previous row, same column)
+   */
+  static final int UP = 3;
+
+  /**
+   * Number of weight slots kept for every vertex
+   */
+  static final int DIRECTIONS = 4;
+
+  /**
+   * Length of one side of the grid
+   */
+  final int size;
+
+  /**
+   * Total number of vertices in the grid
+   */
+  final int vertices;
+
+  /**
+   * Index offsets for each direction, used to move from a vertex to its neighbour
+   */
+  final int[] offsets;
+
+  /**
+   * Edge weights, weights[DIRECTIONS * i + direction] is the weight of the edge leaving vertex i in that direction.
+   * A weight of 0 means there is no edge, so the slots pointing outside of the grid always stay 0.
+   */
+  final int[] weights;
+
+  /**
+   * Smallest positive weight stored so far, or 0 if there are no edges. Raising or removing edges never raises it,
+   * so it is a lower bound on every weight rather than the exact minimum.
+   */
+  int minWeight;
+
+  /**
+   * Largest weight stored so far, or 0 if there are no edges. Like minWeight it is only ever widened.
+   */
+  int maxWeight;
+
+  /**
+   * Creates an adjacency store for a size x size grid with no edges
+   *
+   * @param size - The length of one side of the grid
+   */
+  GridAdjacency(int size) {
+    if (size < 0 || (long) size * size * DIRECTIONS > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Unsupported grid size " + size);
+    }
+    this.size = size;
+    this.vertices = size * size;
+    this.offsets = new int[] {1, -1, size, -size};
+    this.weights = new int[vertices * DIRECTIONS];
+  }
+
+  /**
+   * Creates an independent copy of another adjacency store
+   *
+   * @param other - The store to copy
+   */
+  GridAdjacency(GridAdjacency other) {
+    this.size = other.size;
+    this.vertices = other.vertices;
+    this.offsets = other.offsets;
+    this.weights = other.weights.clone();
+    this.minWeight = other.minWeight;
+    this.maxWeight = other.maxWeight;
+  }
+
+  /**
+   * Finds which direction leads from vertex u to vertex v
+   *
+   * @param u - Zero based index of the first vertex
+   * @param v - Zero based index of the second vertex
+   * @return - The direction from u to v, or -1 if the vertices are not grid neighbours
+   */
+  int direction(int u, int v) {
+    return direction(size, u, v);
+  }
+
+  /**
+   * Finds which direction leads from vertex u to vertex v in a grid of any size, without needing its weights
+   *
+   * @param size - The length of one side of the grid
+   * @param u - Zero based index of the first vertex
+   * @param v - Zero based index of the second vertex
+   * @return - The direction from u to v, or -1 if the vertices are not grid neighbours
+   */
+  static int direction(int size, int u, int v) {
+    int vertices = size * size;
+    if (u < 0 || v < 0 || u >= vertices || v >= vertices) {
+      return -1;
+    }
+    int diff = v - u;
+    if (diff == 1 && u % size != size - 1) {
+      return RIGHT;
+    }
+    if (diff == -1 && u % size != 0) {
+      return LEFT;
+    }
+    if (diff == size) {
+      return DOWN;
+    }
+    if (diff == -size) {
+      return UP;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the direction that points the opposite way
+   *
+   * @param dir - A direction
+   * @return - The opposite direction
+   */
+  static int opposite(int dir) {
+    return dir ^ 1;
+  }
+
+  /**
+   * Checks if vertex i has a grid neighbour in the given direction
+   *
+   * @param i - Zero based index of the vertex
+   * @param dir - The direction to check
+   * @return - True if the neighbour lies inside the grid
+   */
+  boolean hasNeighbour(int i, int dir) {
+    switch (dir) {
+      case RIGHT:
+        return i % size != size - 1;
+      case LEFT:
+        return i % size != 0;
+      case DOWN:
+        return i + size < vertices;
+      default:
+        return i >= size;
+    }
+  }
+
+  /**
+   * Returns the weight of the edge that enters vertex i from its neighbour in the given direction. This is the
+   * reverse adjacency used by searches that run backwards from the target.
+   *
+   * @param i - Zero based index of the vertex the edge ends at
+   * @param dir - The direction from i to the vertex the edge starts at
+   * @return - The weight of the edge, or 0 if there is no such edge
+   */
+  int incomingWeight(int i, int dir) {
+    if (!hasNeighbour(i, dir)) {
+      return 0;
+    }
+    return weights[(i + offsets[dir]) * DIRECTIONS + opposite(dir)];
+  }
+
+  /**
+   * Sets the weight of the edge from u to v. Weights that are not positive remove the edge, the same way a 0 in the
+   * old adjacency matrix meant that there was no edge.
+   *
+   * @param u - Zero based index of the vertex the edge starts at
+   * @param v - Zero based index of the vertex the edge ends at
+   * @param weight - The weight of the edge
+   */
+  void setEdge(int u, int v, int weight) {
+    int dir = direction(u, v);
+    if (dir < 0) {
+      throw new IllegalArgumentException("Vertices " + (u + 1) + " and " + (v + 1) + " are not adjacent in the grid");
+    }
+    weights[u * DIRECTIONS + dir] = Math.max(weight, 0);
+    if (weight > 0) {
+      if (minWeight == 0 || weight < minWeight) {
+        minWeight = weight;
+      }
+      if (weight > maxWeight) {
+        maxWeight = weight;
+      }
+    }
+  }
+
+  /**
+   * Sets the weights of a batch of edges. Every pair of vertices is checked before any weight changes, so a bad
+   * pair leaves the store untouched. An edge may appear more than once, the last weight wins.
+   *
+   * @param from - Zero based index of the vertex each edge starts at
+   * @param to - Zero based index of the vertex each edge ends at
+   * @param weight - The new weight of each edge, weights that are not positive remove the edge
+   * @return - The weight each edge had just before its entry was applied, in the same order
+   */
+  int[] setEdges(int[] from, int[] to, int[] weight) {
+    if (from.length != to.length || from.length != weight.length) {
+      throw new IllegalArgumentException("Got " + from.length + " start vertices, " + to.length + " end vertices and "
+          + weight.length + " weights");
+    }
+    for (int i = 0; i < from.length; i++) {
+      if (direction(from[i], to[i]) < 0) {
+        throw new IllegalArgumentException("Vertices " + (from[i] + 1) + " and " + (to[i] + 1)
+            + " are not adjacent in the grid");
+      }
+    }
+    int[] old = new int[from.length];
+    for (int i = 0; i < from.length; i++) {
+      old[i] = weight(from[i], to[i]);
+      setEdge(from[i], to[i], weight[i]);
+    }
+    return old;
+  }
+
+  /**
+   * Returns the weight of the edge from u to v
+   *
+   * @param u - Zero based index of the vertex the edge starts at
+   * @param v - Zero based index of the vertex the edge ends at
+   * @return - The weight of the edge, or 0 if there is no such edge
+   */
+  int weight(int u, int v) {
+    int dir = direction(u, v);
+    return dir < 0 ? 0 : weights[u * DIRECTIONS + dir];
+  }
+}
@@ -1,10 +1,11 @@
 package hw4.student;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Class to represent a Weighted Grid Graph. Methods are 
@@ -16,24 +17,41 @@ import java.util.ArrayList;
 public class GridGraph implements GridGraphInterface {
 
   /**
-   * Initializes the arraylist for when the lines in the input files are being read
+   * The current version of the graph: its edge weights along with the trees, hierarchies and landmark tables built
+   * on them, or null before the first build. Queries read it once and run on that version to the end, writers
+   * publish a whole new version in its place.
    */
-  private ArrayList<String> graph = new ArrayList<>();
+  private volatile GraphVersion graph;
 
   /**
-   * Initializes the adjacency matrix which will be used to find the shortest path
+   * Largest number of trees the tree cache of each new version holds, 0 if tree caching is off
    */
-  private int[][] adjMatrix;
+  private int treeCacheCapacity;
 
   /**
-   * Initializes the length of one side the graph being used from the input file
+   * Held while a new version is published, so two writers never start from the same version and lose a change
    */
-  private int size;
+  private final Object writeLock = new Object();
 
   /**
-   * Initializes the total number of vertices in the adjacency matrix which is also it's total length
+   * Path length returned by findPath when the target can not be reached from the source
    */
-  private int matrixVertices;
+  public static final int UNREACHABLE = -1;
+
+  /**
+   * Path returned by findPath when the target can not be reached from the source
+   */
+  public static final int[] NO_PATH = new int[0];
+
+  /**
+   * Scratch buffers of each thread that queries this graph
+   */
+  private final ThreadLocal<SearchScratch> scratchBuffers = new ThreadLocal<>();
+
+  /**
+   * Per query counters and latency histograms, or null if metrics are turned off
+   */
+  private volatile SearchMetrics metrics;
 
   /**
    * Default constructor
@@ -43,8 +61,13 @@ public class GridGraph implements GridGraphInterface {
 
   /**
    * Builds a grid graph from a specified file. It is assumed that the input file is formatted correctly.
-   * The input file is read by a BufferReader, each line is made into an index of an Arraylist, and then an adjacency
-   * matrix is made which holds all the weights of edges of the input graph.
+   * The input file is memory mapped and its integers are parsed straight from the bytes into a grid adjacency store
+   * which holds all the weights of edges of the input graph. No String is made for any line, so large files load at
+   * close to disk speed. Each vertex only keeps a weight for each of its four grid neighbours, so memory grows with
+   * the number of vertices instead of its square.
+   *
+   * The new graph is built off to the side and then swapped in at once, so other threads can keep querying while
+   * it loads. Queries that started before the swap finish on the old graph.
    *
    * @param filename - The input file representing the graph
    * @throws FileNotFoundException - Throws exception if there is no file found
@@ -52,49 +75,114 @@ public class GridGraph implements GridGraphInterface {
   public void buildGraph(String filename) throws FileNotFoundException {
     try {
 
-      BufferedReader reader = new BufferedReader(new FileReader(filename));
+      /*
+      The first integer in the file is the length of one side of the graph. Every line after it has 3 integers. The
+      first integer becomes the first vertex. The second number is the vertex attached to the first vertex. The
+      third integer is the weight associated between them.
+      */
+      GridAdjacency adjacency = GridGraphLoader.load(filename);
 
-      //Each line in the input file
-      String line;
+      //Trees and hierarchies of the old graph are not carried over
+      publish(adjacency);
 
-      //Adds all the lines into an ArrayList
-      while ((line = reader.readLine()) != null) {
-        graph.add(line.trim());
-      }
-      reader.close();
+    }
+    catch (IOException e) {
+      FileNotFoundException notFound = new FileNotFoundException("File " + filename + " not found");
+      notFound.initCause(e);
+      throw notFound;
+    }
 
-      //First line in the file is assumed to be the length of one side of the graph
-      size = Integer.parseInt(graph.get(0));
+  }
 
-      //One side of the matrix has to represent all the vertices
-      matrixVertices = size*size;
 
-      //Creates the adjacency matrix
-      adjMatrix = new int[matrixVertices][matrixVertices];
+  /**
+   * Builds a grid graph from a binary snapshot written by saveSnapshot or by the GridGraphSnapshot converter. The
+   * snapshot is memory mapped and copied in bulk, which is much faster than parsing the text format. Like
+   * buildGraph, the new graph is swapped in at once while other threads keep querying.
+   *
+   * @param filename - The snapshot file
+   * @throws IOException - Throws exception if the file can not be read or is not a valid snapshot
+   */
+  public void loadSnapshot(String filename) throws IOException {
+    publish(GridGraphSnapshot.read(filename));
+  }
 
-      /*
-      Connects and vertex which has a weight > 0 associated with it by using the ArrayList. Each line, except the
-      first, has 3 integers. The first integer becomes the first vertex. The second number is the vertex attached
-      to the first vertex. The third integer is the weight associated between them. This creates the edges and
-      weights in the adjacency matrix.
-      */
-      for (int k = 1; k < graph.size(); k++) {
-        String[] temp = graph.get(k).split("\t");
-        adjMatrix[Integer.parseInt(temp[0]) - 1][Integer.parseInt(temp[1]) - 1] = Integer.parseInt(temp[2]);
-      }
+  /**
+   * Saves the built graph as a binary snapshot that loadSnapshot can read back.
+   *
+   * @param filename - The snapshot file, replaced if it already exists
+   * @throws IOException - Throws exception if the file can not be written
+   */
+  public void saveSnapshot(String filename) throws IOException {
+    GridGraphSnapshot.write(version().adjacency, filename);
+  }
 
+  /**
+   * Changes the weight of a single edge without rebuilding the graph. See updateEdges for what happens to the data
+   * derived from the graph.
+   *
+   * @param u - The vertex the edge starts at (one based index)
+   * @param v - The vertex the edge ends at (one based index), a grid neighbour of u
+   * @param w - The new weight of the edge, a weight that is not positive removes the edge
+   */
+  public void updateEdge(int u, int v, int w) {
+    updateEdges(new int[] {u}, new int[] {v}, new int[] {w});
+  }
+
+  /**
+   * Changes the weights of a batch of edges without rebuilding the graph. Every pair is checked first, so a bad
+   * pair leaves the graph unchanged. Cached shortest path trees are repaired in place of being dropped: only the
+   * vertices whose shortest path can change are searched again. Contraction hierarchies are dropped, since their
+   * shortcuts bake in the old weights. Landmark tables stay valid lower bounds as long as no edge got lighter or
+   * was added, so they are only dropped in that case. The weights are changed in a copy that is swapped in at once,
+   * so queries running meanwhile finish on the old weights. The copy costs O(V), so changes are best batched.
+   *
+   * @param us - The vertices the edges start at (one based indices)
+   * @param vs - The vertices the edges end at (one based indices)
+   * @param ws - The new weight of each edge, weights that are not positive remove the edge
+   */
+  public void updateEdges(int[] us, int[] vs, int[] ws) {
+    int count = us.length;
+    if (vs.length != count || ws.length != count) {
+      throw new IllegalArgumentException("Got " + count + " start vertices, " + vs.length + " end vertices and "
+          + ws.length + " weights");
     }
-    catch (IOException e) {
-      throw new FileNotFoundException("File " + filename + " not found");
-    }
+    synchronized (writeLock) {
+      GraphVersion current = version();
+      int[] from = new int[count];
+      int[] to = new int[count];
+      for (int i = 0; i < count; i++) {
+        checkVertex(current.adjacency, us[i]);
+        checkVertex(current.adjacency, vs[i]);
+        from[i] = us[i] - 1;
+        to[i] = vs[i] - 1;
+      }
+      GridAdjacency adjacency = new GridAdjacency(current.adjacency);
+      int[] oldWeights = adjacency.setEdges(from, to, ws);
 
-  }
+      int[] dirs = new int[count];
+      boolean lighter = false;
+      for (int i = 0; i < count; i++) {
+        dirs[i] = adjacency.direction(from[i], to[i]);
+        int now = adjacency.weights[from[i] * GridAdjacency.DIRECTIONS + dirs[i]];
+        if (now != 0 && (oldWeights[i] == 0 || now < oldWeights[i])) {
+          lighter = true;
+        }
+      }
 
+      ShortestPathTreeCache cache = current.treeCache;
+      if (cache != null) {
+        SearchScratch scratch = threadScratch(adjacency.vertices);
+        cache = cache.map(tree -> tree.repair(adjacency, from, dirs, oldWeights, scratch));
+      }
+      graph = current.withWeights(adjacency, cache, !lighter);
+    }
+  }
 
   /**
-   * If the boolean weighted is false, then it takes all the non-zero values in the adjacency matrix and replaces
-   * them with 1's. Then it finds the shortest path between a source vertex and a target vertex using
-   * Dijkstra's algorithm.
+   * Finds the shortest path between a source vertex and a target vertex. Weighted queries use Dijkstra's algorithm,
+   * unweighted queries use a breadth-first search since every edge then counts as 1. The weights of the graph are
+   * never changed, so weighted and unweighted queries can be mixed freely.
    *
    * @param s - Source vertex (one based index)
    * @param t - Target vertex (one based index)
@@ -103,116 +191,919 @@ public class GridGraph implements GridGraphInterface {
    * separated by whitespace.
    */
   public String findShortestPath(int s, int t, boolean weighted) {
+    return findShortestPath(s, t, weighted, SearchMode.DIJKSTRA);
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex with the chosen search algorithm. All modes
+   * return a path of the same length as Dijkstra's algorithm would. The search runs in the calling thread's own
+   * scratch buffers, so queries from different threads never interfere.
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @return - A String encoding the shortest path. Vertices are
+   * separated by whitespace.
+   */
+  public String findShortestPath(int s, int t, boolean weighted, SearchMode mode) {
 
-    int counter = 0;
-    int counter2 = 0;
+    //The path is traced into the scratch's own buffer, then formatted. A query from a vertex to itself goes through
+    //route as well, so its vertices are checked and it shows up in the metrics.
+    GraphVersion current = version();
+    int[] path = threadScratch(current.adjacency.vertices).path();
+    int length = route(current, s, t, weighted, mode, path);
 
-    //Checks if the weighted boolean is false to replace weights with 1's
-    if(!weighted) {
-      while (counter < adjMatrix.length) {
-        while (counter2 < adjMatrix.length) {
-          if (adjMatrix[counter][counter2] != 0) {
-            adjMatrix[counter][counter2] = 1;
-          }
-          counter2++;
-        }
-        counter++;
-        counter2 = 0;
+    //A blank string indicates that there is no path from the source to the target vertex, or that they are the same
+    return length == UNREACHABLE || length == 1 ? "" : formatPath(path, length);
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex using Dijkstra's algorithm, or a
+   * breadth-first search for unweighted queries.
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The vertices of the path from s to t (one based indices), or NO_PATH if t can not be reached
+   */
+  public int[] findPath(int s, int t, boolean weighted) {
+    return findPath(s, t, weighted, SearchMode.DIJKSTRA);
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex with the chosen search algorithm. Unlike
+   * findShortestPath, a query from a vertex to itself returns the single vertex path {s}.
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @return - The vertices of the path from s to t (one based indices), or NO_PATH if t can not be reached
+   */
+  public int[] findPath(int s, int t, boolean weighted, SearchMode mode) {
+    GraphVersion current = version();
+    int[] path = threadScratch(current.adjacency.vertices).path();
+    int length = route(current, s, t, weighted, mode, path);
+    return length == UNREACHABLE ? NO_PATH : Arrays.copyOf(path, length);
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex with the chosen search algorithm while a
+   * listener watches the search expand. The listener gets the settled and relaxed vertices in batches on the calling
+   * thread as the search runs, then the path. Other queries are not watched, and a query with no listener set costs
+   * one extra null check per vertex.
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @param listener - Receives the progress of the search
+   * @return - The vertices of the path from s to t (one based indices), or NO_PATH if t can not be reached
+   */
+  public int[] findPath(int s, int t, boolean weighted, SearchMode mode, SearchListener listener) {
+    GraphVersion current = version();
+    SearchScratch scratch = threadScratch(current.adjacency.vertices);
+    int[] path = scratch.path();
+    int length;
+    scratch.listen(listener);
+    try {
+      length = route(current, s, t, weighted, mode, path);
+    } finally {
+      //Hands over the last batches and stops reporting, also when the query failed
+      scratch.listen(null);
+    }
+    int[] found = length == UNREACHABLE ? NO_PATH : Arrays.copyOf(path, length);
+    listener.finished(found);
+    return found;
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex and writes it into a buffer owned by the
+   * caller, so repeated queries allocate nothing. The buffer needs room for the whole path, which never has more
+   * than size*size vertices.
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @param path - Buffer that receives the vertices of the path from s to t (one based indices)
+   * @return - The number of vertices written, or UNREACHABLE if t can not be reached
+   */
+  public int findPath(int s, int t, boolean weighted, SearchMode mode, int[] path) {
+    return route(version(), s, t, weighted, mode, path);
+  }
+
+  /**
+   * Formats a path the way findShortestPath returns it, with the vertices separated by single spaces.
+   *
+   * @param path - The vertices of the path
+   * @param length - The number of vertices of the path to use
+   * @return - The formatted path
+   */
+  public static String formatPath(int[] path, int length) {
+    StringBuilder builder = new StringBuilder(length * 8);
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        builder.append(' ');
+      }
+      builder.append(path[i]);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Finds the shortest paths for a batch of source and target pairs using Dijkstra's algorithm, or a breadth-first
+   * search for unweighted queries.
+   *
+   * @param sources - Source vertices (one based indices)
+   * @param targets - Target vertices (one based indices), one for each source
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The shortest path of each pair, encoded the same way as by findShortestPath
+   */
+  public String[] findShortestPaths(int[] sources, int[] targets, boolean weighted) {
+    return findShortestPaths(sources, targets, weighted, SearchMode.DIJKSTRA);
+  }
+
+  /**
+   * Finds the shortest paths for a batch of source and target pairs with the chosen search algorithm. The queries
+   * are spread over the common fork-join pool, and each worker thread reuses its own scratch buffers, so throughput
+   * grows with the number of cores.
+   *
+   * @param sources - Source vertices (one based indices)
+   * @param targets - Target vertices (one based indices), one for each source
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @return - The shortest path of each pair, encoded the same way as by findShortestPath
+   */
+  public String[] findShortestPaths(int[] sources, int[] targets, boolean weighted, SearchMode mode) {
+    if (sources.length != targets.length) {
+      throw new IllegalArgumentException("Got " + sources.length + " sources but " + targets.length + " targets");
+    }
+    SearchMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    String[] paths = new String[sources.length];
+    IntStream.range(0, sources.length).parallel()
+        .forEach(i -> paths[i] = findShortestPath(sources[i], targets[i], weighted, mode));
+    if (recorder != null) {
+      recorder.recordBatch(weighted, System.nanoTime() - start);
+    }
+    return paths;
+  }
+
+  /**
+   * Finds the shortest paths for a batch of source and target pairs with the chosen search algorithm, in parallel
+   * over the common fork-join pool, without formatting them as strings.
+   *
+   * @param sources - Source vertices (one based indices)
+   * @param targets - Target vertices (one based indices), one for each source
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @return - The path of each pair as returned by findPath, NO_PATH for pairs that are not connected
+   */
+  public int[][] findPaths(int[] sources, int[] targets, boolean weighted, SearchMode mode) {
+    if (sources.length != targets.length) {
+      throw new IllegalArgumentException("Got " + sources.length + " sources but " + targets.length + " targets");
+    }
+    SearchMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    int[][] paths = new int[sources.length][];
+    IntStream.range(0, sources.length).parallel()
+        .forEach(i -> paths[i] = findPath(sources[i], targets[i], weighted, mode));
+    if (recorder != null) {
+      recorder.recordBatch(weighted, System.nanoTime() - start);
+    }
+    return paths;
+  }
+
+  /**
+   * Turns on caching of shortest path trees. The first query from a source then runs a full search and keeps the
+   * resulting tree, and later queries from the same source, with the same weighted flag, only walk that tree. Each
+   * tree takes 8 bytes per vertex, so maxTrees bounds the memory used. Once the cache is full the least recently
+   * used tree is dropped. Turning the cache on again replaces the old cache.
+   *
+   * @param maxTrees - Largest number of trees kept at once
+   */
+  public void enableTreeCache(int maxTrees) {
+    ShortestPathTreeCache cache = new ShortestPathTreeCache(maxTrees);
+    synchronized (writeLock) {
+      treeCacheCapacity = maxTrees;
+      GraphVersion current = graph;
+      if (current != null) {
+        graph = current.withTreeCache(cache);
+      }
+    }
+  }
+
+  /**
+   * Turns off caching of shortest path trees and drops every cached tree
+   */
+  public void disableTreeCache() {
+    synchronized (writeLock) {
+      treeCacheCapacity = 0;
+      GraphVersion current = graph;
+      if (current != null) {
+        graph = current.withTreeCache(null);
+      }
+    }
+  }
+
+  /**
+   * Turns on per query metrics: the vertices settled, edge relaxations, queue operations, path length and latency of
+   * every query, summed per search mode and weighted flag. Turning metrics on again starts from empty metrics. While
+   * metrics are off, queries skip all of this after a single field read.
+   *
+   * @return - The new metrics, which fill up as queries are answered
+   */
+  public SearchMetrics enableMetrics() {
+    SearchMetrics recorder = new SearchMetrics();
+    metrics = recorder;
+    return recorder;
+  }
+
+  /**
+   * Turns off per query metrics. Metrics returned earlier keep what they recorded.
+   */
+  public void disableMetrics() {
+    metrics = null;
+  }
+
+  /**
+   * Returns the per query metrics
+   *
+   * @return - The metrics being filled, or null if metrics are turned off
+   */
+  public SearchMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Publishes a freshly built graph as the current version, with an empty tree cache if caching is on and no
+   * hierarchies or landmark tables, since those only describe the graph they were built on
+   *
+   * @param adjacency - The edge weights of the new graph
+   */
+  private void publish(GridAdjacency adjacency) {
+    synchronized (writeLock) {
+      graph = new GraphVersion(adjacency,
+          treeCacheCapacity == 0 ? null : new ShortestPathTreeCache(treeCacheCapacity));
+    }
+  }
+
+  /**
+   * Adds a hierarchy or landmark tables to the current version, as long as it still has the weights they were built
+   * on
+   *
+   * @param built - The weights the data was built on
+   * @param update - Makes the new version from the current one
+   */
+  private void publishDerived(GridAdjacency built, UnaryOperator<GraphVersion> update) {
+    synchronized (writeLock) {
+      GraphVersion current = version();
+      if (current.adjacency != built) {
+        throw new IllegalStateException("The graph changed while data derived from it was being built");
+      }
+      graph = update.apply(current);
+    }
+  }
+
+  /**
+   * Returns the current version of the graph
+   *
+   * @return - The version queries should run on
+   */
+  private GraphVersion version() {
+    GraphVersion current = graph;
+    if (current == null) {
+      throw new IllegalStateException("Call buildGraph or loadSnapshot before using the graph");
+    }
+    return current;
+  }
+
+  /**
+   * Preprocesses the graph into a contraction hierarchy so queries with SearchMode.CONTRACTION_HIERARCHY can be
+   * answered. Preprocessing is much slower than a single query, but afterwards every query only settles a small
+   * number of vertices. Weighted and unweighted queries need separate hierarchies. Rebuilding or reloading the graph
+   * drops the hierarchies. Queries keep running on the graph while the hierarchy is built.
+   *
+   * @param weighted - Whether the hierarchy is for weighted or for unweighted queries
+   * @return - The number of shortcut edges that were added
+   */
+  public int buildContractionHierarchy(boolean weighted) {
+    GridAdjacency adjacency = version().adjacency;
+    ContractionHierarchy hierarchy = ContractionHierarchy.build(adjacency, weighted);
+    publishDerived(adjacency, current -> current.withHierarchy(hierarchy));
+    return hierarchy.shortcuts;
+  }
+
+  /**
+   * Picks landmark vertices and computes the distances from and to each of them, so queries with SearchMode.ALT can
+   * be answered. This runs two full searches per landmark. More landmarks give tighter bounds at 8 bytes per vertex
+   * each, and a handful is usually enough. Weighted and unweighted queries need separate tables. Rebuilding or
+   * reloading the graph drops the tables.
+   *
+   * @param count - Number of landmarks to pick
+   * @param weighted - Whether the tables are for weighted or for unweighted queries
+   * @return - The landmarks that were picked (one based indices)
+   */
+  public int[] buildLandmarks(int count, boolean weighted) {
+    GridAdjacency adjacency = version().adjacency;
+    LandmarkTable table = LandmarkTable.build(adjacency, count, weighted);
+    publishDerived(adjacency, current -> current.withLandmarks(table));
+    int[] picked = new int[count];
+    for (int l = 0; l < count; l++) {
+      picked[l] = table.landmarks[l] + 1;
+    }
+    return picked;
+  }
+
+  /**
+   * Saves the landmark tables built by buildLandmarks so loadLandmarks can read them back
+   *
+   * @param filename - The landmark file, replaced if it already exists
+   * @param weighted - Whether to save the tables for weighted or for unweighted queries
+   * @throws IOException - Throws exception if the file can not be written
+   */
+  public void saveLandmarks(String filename, boolean weighted) throws IOException {
+    landmarks(version(), weighted).write(filename);
+  }
+
+  /**
+   * Loads landmark tables saved by saveLandmarks for this graph. The file is memory mapped and copied in bulk. The
+   * tables replace the ones built earlier for the same kind of query.
+   *
+   * @param filename - The landmark file
+   * @throws IOException - Throws exception if the file can not be read, is not a valid landmark file, or was made
+   * for a graph with a different number of vertices
+   */
+  public void loadLandmarks(String filename) throws IOException {
+    LandmarkTable table = LandmarkTable.read(filename);
+    GridAdjacency adjacency = version().adjacency;
+    if (table.vertices != adjacency.vertices) {
+      throw new IOException("Landmark file " + filename + " has " + table.vertices + " vertices, the graph has "
+          + adjacency.vertices);
+    }
+    publishDerived(adjacency, current -> current.withLandmarks(table));
+  }
+
+  /**
+   * Returns the landmark tables for a kind of query
+   *
+   * @param graph - The version of the graph
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The landmark tables
+   */
+  private static LandmarkTable landmarks(GraphVersion graph, boolean weighted) {
+    LandmarkTable table = graph.landmarks(weighted);
+    if (table == null) {
+      throw new IllegalStateException("Call buildLandmarks(count, " + weighted + ") before using landmarks");
+    }
+    return table;
+  }
+
+  /**
+   * Returns the full shortest path tree of a source vertex, from the tree cache if it is enabled and holds the tree.
+   * A tree built here is added to the cache.
+   *
+   * @param s - Source vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The shortest path tree rooted at s
+   */
+  public ShortestPathTree getShortestPathTree(int s, boolean weighted) {
+    return shortestPathTree(version(), s, weighted);
+  }
+
+  /**
+   * Returns the full shortest path tree of a source vertex in a version of the graph, from its tree cache if it is
+   * enabled and holds the tree. A tree built here is added to the cache.
+   *
+   * @param graph - The version of the graph
+   * @param s - Source vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The shortest path tree rooted at s
+   */
+  private ShortestPathTree shortestPathTree(GraphVersion graph, int s, boolean weighted) {
+    checkVertex(graph.adjacency, s);
+    ShortestPathTreeCache cache = graph.treeCache;
+    ShortestPathTree tree = cache == null ? null : cache.get(s, weighted);
+    if (tree == null) {
+      tree = buildTree(graph.adjacency, s, weighted);
+      if (cache != null) {
+        cache.put(tree);
+      }
+    }
+    return tree;
+  }
+
+  /**
+   * Computes the full shortest path tree of a source vertex with parallel delta-stepping on the common fork-join
+   * pool. This is meant for jobs that need the distance to every vertex of a large grid: it uses every core instead
+   * of one, at the price of some repeated work. The bucket width defaults to the average of the smallest and
+   * largest edge weight. The tree cache is neither read nor filled.
+   *
+   * @param s - Source vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The shortest path tree rooted at s
+   */
+  public ShortestPathTree parallelShortestPathTree(int s, boolean weighted) {
+    return parallelShortestPathTree(s, weighted, DeltaStepping.defaultDelta(version().adjacency, weighted),
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the full shortest path tree of a source vertex with parallel delta-stepping. Vertices are relaxed in
+   * buckets of width delta: a small delta does about as much work as Dijkstra's algorithm but leaves little to do
+   * in parallel, a large one gives every thread plenty to do but relaxes vertices more often.
+   *
+   * @param s - Source vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param delta - Width of a bucket, at least 1
+   * @param pool - Pool the search runs on
+   * @return - The shortest path tree rooted at s
+   */
+  public ShortestPathTree parallelShortestPathTree(int s, boolean weighted, int delta, ForkJoinPool pool) {
+    GridAdjacency adjacency = version().adjacency;
+    checkVertex(adjacency, s);
+    return DeltaStepping.run(adjacency, s - 1, weighted, delta, pool);
+  }
+
+  /**
+   * Finds the path from s to t and writes it into a buffer, recording what the query cost if metrics are turned on
+   *
+   * @param graph - The version of the graph to search
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use when no tree is cached
+   * @param path - Buffer that receives the vertices of the path (one based indices)
+   * @return - The number of vertices on the path, or UNREACHABLE if t can not be reached
+   */
+  private int route(GraphVersion graph, int s, int t, boolean weighted, SearchMode mode, int[] path) {
+    SearchMetrics recorder = metrics;
+    if (recorder == null) {
+      return findRoute(graph, s, t, weighted, mode, path);
+    }
+    //The scratch counters only count while a query is measured and never reset, so the work of this query is what
+    //they grew by while it ran
+    SearchScratch scratch = threadScratch(graph.adjacency.vertices);
+    scratch.count(true);
+    try {
+      long settled = scratch.settledCount();
+      long relaxations = scratch.reachedCount();
+      long operations = scratch.queueOperations();
+      long start = System.nanoTime();
+      int length = findRoute(graph, s, t, weighted, mode, path);
+      long nanos = System.nanoTime() - start;
+      recorder.record(new QueryStats(mode, weighted, scratch.settledCount() - settled,
+          scratch.reachedCount() - relaxations, scratch.queueOperations() - operations,
+          length == UNREACHABLE ? 0 : length, nanos));
+      return length;
+    } finally {
+      scratch.count(false);
+    }
+  }
+
+  /**
+   * Finds the path from s to t and writes it into a buffer. If the tree cache is enabled the path is read from the
+   * cached tree of s, building that tree first if needed, otherwise the chosen search algorithm runs from s to t.
+   *
+   * @param graph - The version of the graph to search
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use when no tree is cached
+   * @param path - Buffer that receives the vertices of the path (one based indices)
+   * @return - The number of vertices on the path, or UNREACHABLE if t can not be reached
+   */
+  private int findRoute(GraphVersion graph, int s, int t, boolean weighted, SearchMode mode, int[] path) {
+    GridAdjacency adjacency = graph.adjacency;
+    checkVertex(adjacency, s);
+    checkVertex(adjacency, t);
+    if (graph.treeCache != null && s != t) {
+      return shortestPathTree(graph, s, weighted).pathTo(t, path);
+    }
+    if (mode == SearchMode.CONTRACTION_HIERARCHY) {
+      ContractionHierarchy hierarchy = graph.hierarchy(weighted);
+      if (hierarchy == null) {
+        throw new IllegalStateException("Call buildContractionHierarchy(" + weighted + ") before querying it");
       }
+      return hierarchy.findPath(s - 1, t - 1, scratch(adjacency.vertices), path);
     }
+    return tracePath(search(graph, s, t, weighted, mode), s - 1, t - 1, path);
+  }
 
-    //If the source and target vertex are the same, it returns a blank string
+  /**
+   * Runs a search from a source vertex to every vertex and copies the result out of the scratch
+   *
+   * @param adjacency - The edge weights to search
+   * @param s - Source vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The shortest path tree rooted at s
+   */
+  private ShortestPathTree buildTree(GridAdjacency adjacency, int s, boolean weighted) {
+    int vertices = adjacency.vertices;
+    SearchScratch scratch = scratch(vertices);
+    //A target of -1 is never reached, so the search covers the whole graph
+    if (weighted) {
+      dijkstra(adjacency, s - 1, -1, scratch);
+    } else {
+      breadthFirstSearch(adjacency, s - 1, -1, scratch);
+    }
+    int[] distance = new int[vertices];
+    int[] predecessor = new int[vertices];
+    for (int v = 0; v < vertices; v++) {
+      distance[v] = scratch.distance(v);
+      predecessor[v] = scratch.predecessor(v);
+    }
+    return new ShortestPathTree(s, weighted, distance, predecessor);
+  }
+
+  /**
+   * Makes sure a vertex exists in the graph
+   *
+   * @param adjacency - The edge weights of the graph
+   * @param v - The vertex to check (one based index)
+   */
+  private static void checkVertex(GridAdjacency adjacency, int v) {
+    if (v < 1 || v > adjacency.vertices) {
+      throw new IllegalArgumentException("Vertex " + v + " is not between 1 and " + adjacency.vertices);
+    }
+  }
+
+  /**
+   * Runs the chosen search algorithm from s towards t in the calling thread's scratch buffers
+   *
+   * @param graph - The version of the graph to search
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param mode - The search algorithm to use
+   * @return - The scratch holding the predecessors found by the search
+   */
+  private SearchScratch search(GraphVersion graph, int s, int t, boolean weighted, SearchMode mode) {
+    GridAdjacency adjacency = graph.adjacency;
+    SearchScratch scratch = scratch(adjacency.vertices);
     if (s == t) {
-      return "";
+      return scratch;
+    }
+    if (mode == SearchMode.JUMP_POINT && (!weighted || adjacency.minWeight == adjacency.maxWeight)) {
+      //With every weight the same, the path with the fewest steps is also the lightest one
+      JumpPointSearch.run(adjacency, graph.jumpRuns(), s - 1, t - 1, scratch);
+    } else if (mode == SearchMode.A_STAR || mode == SearchMode.JUMP_POINT) {
+      aStar(adjacency, s - 1, t - 1, weighted, null, scratch);
+    } else if (mode == SearchMode.ALT) {
+      aStar(adjacency, s - 1, t - 1, weighted, landmarks(graph, weighted), scratch);
+    } else if (mode == SearchMode.BIDIRECTIONAL) {
+      bidirectionalDijkstra(adjacency, s - 1, t - 1, weighted, scratch);
+    } else if (weighted) {
+      dijkstra(adjacency, s - 1, t - 1, scratch);
+    } else {
+      breadthFirstSearch(adjacency, s - 1, t - 1, scratch);
     }
+    return scratch;
+  }
 
-    String shortestDist = "";
+  /**
+   * Reads the path to the target out of the predecessors left by a search. The vertices are counted first and then
+   * written backwards from the end of the buffer, so the path comes out in order without having to reverse it.
+   *
+   * @param scratch - The scratch holding the predecessors
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param path - Buffer that receives the vertices of the path (one based indices)
+   * @return - The number of vertices on the path, or UNREACHABLE if the search never reached the target
+   */
+  private static int tracePath(SearchScratch scratch, int source, int target, int[] path) {
+    int length = 1;
+    for (int v = target; v != source; length++) {
+      int pred = scratch.predecessor(v);
+      if (pred == 0) {
+        return UNREACHABLE;
+      }
+      v = pred - 1;
+    }
+    if (path.length < length) {
+      throw new IllegalArgumentException("The path has " + length + " vertices but the buffer only holds " + path.length);
+    }
+    int v = target;
+    for (int i = length - 1; i > 0; i--) {
+      path[i] = v + 1;
+      v = scratch.predecessor(v) - 1;
+    }
+    path[0] = source + 1;
+    return length;
+  }
 
-    //Checks if a vertex has been visited or not
-    boolean[] visited = new boolean[matrixVertices];
+  /**
+   * Returns the calling thread's scratch buffers, reset for a new search.
+   *
+   * @param vertices - Number of vertices of the graph being searched
+   * @return - Scratch buffers sized for that graph
+   */
+  private SearchScratch scratch(int vertices) {
+    SearchScratch scratch = threadScratch(vertices);
+    scratch.reset();
+    return scratch;
+  }
 
-    //Keeps track of the distance up to a certain vertex in the path
-    int[] distance = new int[matrixVertices];
+  /**
+   * Returns the calling thread's scratch buffers without resetting them, making new ones if the thread has none yet
+   * or if the graph was rebuilt with a different number of vertices.
+   *
+   * @param vertices - Number of vertices of the graph being searched
+   * @return - Scratch buffers sized for that graph
+   */
+  private SearchScratch threadScratch(int vertices) {
+    SearchScratch scratch = scratchBuffers.get();
+    if (scratch == null || scratch.vertices != vertices) {
+      scratch = new SearchScratch(vertices);
+      scratchBuffers.set(scratch);
+    }
+    return scratch;
+  }
 
-    //Predecessor of a vertex in the shortest path
-    int[] predecessor = new int[matrixVertices];
+  /**
+   * Runs Dijkstra's algorithm from a source vertex and records the predecessor of every vertex that was reached.
+   * The unvisited vertices wait in an indexed min-heap, so the next closest vertex is found in O(log V) instead of by
+   * scanning every vertex. When every weight is small the heap is swapped for a bucket queue (Dial's algorithm),
+   * which finds the next closest vertex in O(1) without comparing keys. The search stops as soon as the target
+   * vertex is reached.
+   *
+   * @param adjacency - The edge weights to search
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param scratch - Freshly reset scratch that receives the distances and predecessors
+   */
+  private static void dijkstra(GridAdjacency adjacency, int source, int target, SearchScratch scratch) {
 
-    //Sets all the vertex distances, except for the vertex we start at, to infinity
-    for (int i = 0; i < matrixVertices; i++) {
-      if (i == s - 1) {
-        distance[s - 1] = 0;
-      } else {
-        distance[i] = Integer.MAX_VALUE;
-      }
-    }
-
-    //Finds the shortest path and records all the predecessors that were found as well as the shortest distance
-    for (int i = 1; i < matrixVertices; i++) {
-      int min = minVertex(distance, visited);
-      visited[min] = true;
-      for (int j = 0; j < matrixVertices; j++) {
-        if (!visited[j] && (distance[min] < Integer.MAX_VALUE) && (adjMatrix[min][j] > 0)) {
-          if (distance[j] > (distance[min] + adjMatrix[min][j])) {
-            distance[j] = (distance[min] + adjMatrix[min][j]);
-            /*
-            Puts all the predecessors into the list. It's min + 1 because we start the graph at vertex 1 but the indices
-            of any list start at 0.
-            */
-            predecessor[j] = min + 1;
-          }
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+    int maxWeight = adjacency.maxWeight;
+    MinQueue heap = maxWeight <= BucketQueue.MAX_WEIGHT ? scratch.buckets(maxWeight) : scratch.heap;
+    scratch.reach(source, 0, 0);
+    heap.push(source, 0);
+    while (!heap.isEmpty()) {
+      int min = heap.poll();
+      scratch.settle(min);
+      if (min == target) {
+        break;
+      }
+      int minDistance = scratch.distance(min);
+      //Only the four grid neighbours of the vertex can be connected to it
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int weight = weights[min * GridAdjacency.DIRECTIONS + dir];
+        if (weight == 0) {
+          continue;
+        }
+        int j = min + offsets[dir];
+        int candidate = minDistance + weight;
+        if (!scratch.isSettled(j) && scratch.distance(j) > candidate) {
+          /*
+          Records the predecessor. It's min + 1 because we start the graph at vertex 1 but the indices of any list
+          start at 0.
+          */
+          scratch.reach(j, candidate, min + 1);
+          heap.push(j, candidate);
         }
       }
     }
+  }
 
-    /*
-    Creates the string from the predecessors. If there is an index error it catches it and returns a blank
-    string, this indicates that there is no shortest path from the source to target vertices
-    */
-    try {
+  /**
+   * Runs an A* search from a source vertex towards a target vertex and records the predecessor of every vertex that
+   * was reached. Vertices are ordered by their distance from the source plus the Manhattan distance to the target,
+   * scaled by the smallest edge weight. Every edge covers one grid step and weighs at least that much, so the
+   * estimate never overshoots and every vertex is final once it leaves the heap, like in Dijkstra's algorithm.
+   * With landmark tables the estimate is the larger of that and the landmark bound, which is just as safe, and
+   * vertices the landmarks prove can not reach the target are skipped.
+   *
+   * @param adjacency - The edge weights to search
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param landmarks - Landmark tables for the same kind of query, or null to use the Manhattan distance only
+   * @param scratch - Freshly reset scratch that receives the distances and predecessors
+   */
+  private static void aStar(GridAdjacency adjacency, int source, int target, boolean weighted,
+                            LandmarkTable landmarks, SearchScratch scratch) {
+
+    //Every grid step costs at least this much
+    int scale = weighted ? adjacency.minWeight : 1;
+    int size = adjacency.size;
+    int targetRow = target / size;
+    int targetCol = target % size;
 
-      shortestDist = shortestDist.concat(t + " ");
-      t -= 1;
-      while (predecessor[t] != s) {
-        shortestDist = shortestDist.concat(predecessor[t] + " ");
-        t = predecessor[t] - 1;
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+    IndexedMinHeap heap = scratch.heap;
+    scratch.reach(source, 0, 0);
+    heap.insert(source, 0);
+    while (!heap.isEmpty()) {
+      int min = heap.poll();
+      scratch.settle(min);
+      if (min == target) {
+        break;
       }
-      shortestDist = shortestDist.concat(s + "");
+      int minDistance = scratch.distance(min);
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int weight = weights[min * GridAdjacency.DIRECTIONS + dir];
+        if (weight == 0) {
+          continue;
+        }
+        int j = min + offsets[dir];
+        if (!weighted) {
+          weight = 1;
+        }
+        int candidate = minDistance + weight;
+        if (!scratch.isSettled(j) && scratch.distance(j) > candidate) {
+          int estimate = scale * (Math.abs(j / size - targetRow) + Math.abs(j % size - targetCol));
+          if (landmarks != null) {
+            int bound = landmarks.lowerBound(j, target);
+            if (bound < 0) {
+              continue;
+            }
+            estimate = Math.max(estimate, bound);
+          }
+          scratch.reach(j, candidate, min + 1);
+          heap.push(j, candidate + estimate);
+        }
+      }
+    }
+  }
 
-      //Reverses the string since the earlier string is from the target vertex to the source vertex
-      String shortestDistReverse = "";
-      String[] temp = shortestDist.split(" ");
+  /**
+   * Runs Dijkstra's algorithm forwards from the source and backwards from the target over the reverse adjacency,
+   * always growing the side whose closest unsettled vertex is nearer. The best path seen so far is kept whenever an
+   * edge joins the two searches, and the search stops once the two closest unsettled distances add up to at least
+   * its length, since no shorter path can be found after that. Each side only has to cover about half of the
+   * distance between the vertices. The predecessors along the path found are recorded.
+   *
+   * @param adjacency - The edge weights to search
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @param scratch - Freshly reset scratch that receives the predecessors of the path
+   */
+  private static void bidirectionalDijkstra(GridAdjacency adjacency, int source, int target, boolean weighted,
+                                            SearchScratch scratch) {
 
-      for (int i = temp.length - 1; i >= 0; i--) {
-        shortestDistReverse = shortestDistReverse.concat(temp[i] + " ");
+    //The forward search uses the scratch itself, the backward search its second half which links to successors
+    SearchScratch back = scratch.backward();
+    back.reset();
+    IndexedMinHeap forward = scratch.heap;
+    IndexedMinHeap backward = back.heap;
+    scratch.reach(source, 0, 0);
+    back.reach(target, 0, 0);
+    forward.insert(source, 0);
+    backward.insert(target, 0);
+
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+
+    //Length of the best path found so far and the edge that joins its two halves
+    long best = Long.MAX_VALUE;
+    int meetFrom = -1;
+    int meetTo = -1;
+
+    while (!forward.isEmpty() && !backward.isEmpty()) {
+      if ((long) forward.minKey() + backward.minKey() >= best) {
+        break;
+      }
+      if (forward.minKey() <= backward.minKey()) {
+        int u = forward.poll();
+        scratch.settle(u);
+        int uDistance = scratch.distance(u);
+        for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+          int weight = weights[u * GridAdjacency.DIRECTIONS + dir];
+          if (weight == 0) {
+            continue;
+          }
+          int j = u + offsets[dir];
+          if (!weighted) {
+            weight = 1;
+          }
+          int candidate = uDistance + weight;
+          if (!scratch.isSettled(j) && scratch.distance(j) > candidate) {
+            scratch.reach(j, candidate, u + 1);
+            forward.push(j, candidate);
+          }
+          int other = back.distance(j);
+          if (other != Integer.MAX_VALUE && (long) candidate + other < best) {
+            best = (long) candidate + other;
+            meetFrom = u;
+            meetTo = j;
+          }
+        }
+      } else {
+        int u = backward.poll();
+        back.settle(u);
+        int uDistance = back.distance(u);
+        for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+          int weight = adjacency.incomingWeight(u, dir);
+          if (weight == 0) {
+            continue;
+          }
+          int j = u + offsets[dir];
+          if (!weighted) {
+            weight = 1;
+          }
+          int candidate = uDistance + weight;
+          if (!back.isSettled(j) && back.distance(j) > candidate) {
+            back.reach(j, candidate, u + 1);
+            backward.push(j, candidate);
+          }
+          int other = scratch.distance(j);
+          if (other != Integer.MAX_VALUE && (long) candidate + other < best) {
+            best = (long) candidate + other;
+            meetFrom = j;
+            meetTo = u;
+          }
+        }
       }
-      return shortestDistReverse.trim();
+    }
 
-    } catch (ArrayIndexOutOfBoundsException e) {
-      return "";
+    if (meetFrom < 0) {
+      return;
+    }
+
+    //Links the backward half of the path onto the forward half, so the path can be read back from the target
+    scratch.link(meetTo, meetFrom + 1);
+    for (int v = meetTo; v != target; v = back.predecessor(v) - 1) {
+      scratch.link(back.predecessor(v) - 1, v + 1);
     }
   }
 
   /**
-   * Helper method to find the next vertex with the minimum distance
+   * Runs a breadth-first search from a source vertex, treating every edge as having a weight of 1, and records the
+   * predecessor of every vertex that was reached. Each vertex enters the ring buffer queue at most once, so the
+   * search is O(V + E) and only reads the graph.
    *
-   * @param distance - The distance of the vertex from the start
-   * @param visited - Boolean to make sure we don't go back to visited vertices
-   * @return - The minimum vertex with the shortest distance
+   * @param adjacency - The edge weights to search
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param scratch - Freshly reset scratch that receives the distances and predecessors
    */
-  private static int minVertex(int[] distance, boolean[] visited) {
+  private static void breadthFirstSearch(GridAdjacency adjacency, int source, int target, SearchScratch scratch) {
 
-    //key starts out as infinity but it will decrease to the next lowest distance every iteration
-    int key = Integer.MAX_VALUE;
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+    IntRingQueue queue = scratch.queue;
+    scratch.reach(source, 0, 0);
+    queue.add(source);
+    while (!queue.isEmpty()) {
+      int u = queue.poll();
+      int next = scratch.distance(u) + 1;
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        if (weights[u * GridAdjacency.DIRECTIONS + dir] == 0) {
+          continue;
+        }
+        int j = u + offsets[dir];
+        if (!scratch.isReached(j)) {
+          scratch.reach(j, next, u + 1);
+          //The first time the target is discovered it is already at its shortest distance
+          if (j == target) {
+            return;
+          }
+          queue.add(j);
+        }
+      }
+    }
+  }
 
-    //Starts it as the lowest possible value because we have not reached any vertex yet
-    int minV = Integer.MIN_VALUE;
+  /**
+   * Returns the length of one side of the grid
+   *
+   * @return - The number of vertices in one row of the grid
+   */
+  public int getSize() {
+    GraphVersion current = graph;
+    return current == null ? 0 : current.adjacency.size;
+  }
 
-    for (int i = 0; i < distance.length; i++) {
-      if (!visited[i] && (minV == Integer.MIN_VALUE || distance[i] < key)) {
-        key = distance[i];
-        minV = i;
+  /**
+   * Lists the vertices that have an edge coming from vertex v, along with the weights of those edges. At most four
+   * neighbours are written, so both arrays need room for at least four entries. Nothing is allocated, which makes
+   * this safe to call from tight loops.
+   *
+   * @param v - The vertex whose neighbours are wanted (one based index)
+   * @param neighbours - Array that the neighbouring vertices are written into (one based indices)
+   * @param weights - Array that the matching edge weights are written into
+   * @return - The number of neighbours that were written
+   * @throws IllegalArgumentException - Throws exception if v is not a vertex of the graph
+   */
+  public int getNeighbours(int v, int[] neighbours, int[] weights) {
+    GridAdjacency adjacency = version().adjacency;
+    checkVertex(adjacency, v);
+    int count = 0;
+    int base = (v - 1) * GridAdjacency.DIRECTIONS;
+    for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+      int weight = adjacency.weights[base + dir];
+      if (weight > 0) {
+        neighbours[count] = v + adjacency.offsets[dir];
+        weights[count] = weight;
+        count++;
       }
     }
-    return minV;
+    return count;
   }
 }
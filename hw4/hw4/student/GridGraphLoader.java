@@ -0,0 +1,199 @@
+package hw4.student;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the tab separated graph files used by GridGraph. The file is memory mapped and the integers are parsed
+ * straight from the mapped bytes into a GridAdjacency, or into any other EdgeSink, so no String is created for any
+ * line. The first integer in the file is the length of one side of the grid, and every following line holds the two
+ * vertices of an edge (one based) and its weight.
+ */
+
+final class GridGraphLoader {
+
+  /**
+   * Largest number of bytes mapped at once. Files bigger than this are mapped one window at a time, since a single
+   * mapping can not be larger than 2 GB.
+   */
+  private static final long WINDOW = 1L << 30;
+
+  /**
+   * Receives the size and the edges as they are parsed
+   */
+  private final EdgeSink sink;
+
+  /**
+   * Whether the size has been read
+   */
+  private boolean started;
+
+  /**
+   * Number of integers completed so far, including the size
+   */
+  private long fields;
+
+  /**
+   * First vertex of the edge being read (one based)
+   */
+  private int from;
+
+  /**
+   * Second vertex of the edge being read (one based)
+   */
+  private int to;
+
+  /**
+   * Value of the integer currently being parsed
+   */
+  private int value;
+
+  /**
+   * Whether the integer currently being parsed has a minus sign
+   */
+  private boolean negative;
+
+  /**
+   * Whether the parser is in the middle of an integer
+   */
+  private boolean inNumber;
+
+  /**
+   * The loader is only used through load() and parse()
+   *
+   * @param sink - Receives the size and the edges
+   */
+  private GridGraphLoader(EdgeSink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Receives what the loader parses from a graph file
+   */
+  interface EdgeSink {
+
+    /**
+     * Called once with the length of one side of the grid, before any edge
+     *
+     * @param size - The length of one side of the grid
+     * @throws IOException - If the sink can not prepare for a grid of this size
+     */
+    void size(int size) throws IOException;
+
+    /**
+     * Called for every edge in the order of the file
+     *
+     * @param from - Zero based index of the vertex the edge starts at
+     * @param to - Zero based index of the vertex the edge ends at
+     * @param weight - The weight of the edge
+     * @throws IOException - If the sink can not store the edge
+     */
+    void edge(int from, int to, int weight) throws IOException;
+  }
+
+  /**
+   * Builds the adjacency store of the graph described by a file. It is assumed that the input file is formatted
+   * correctly.
+   *
+   * @param filename - The input file representing the graph
+   * @return - The adjacency store holding every edge of the file
+   * @throws IOException - If the file can not be read or does not contain the size of the grid
+   */
+  static GridAdjacency load(String filename) throws IOException {
+    GridAdjacency[] adjacency = new GridAdjacency[1];
+    parse(filename, new EdgeSink() {
+      @Override
+      public void size(int size) {
+        adjacency[0] = new GridAdjacency(size);
+      }
+
+      @Override
+      public void edge(int from, int to, int weight) {
+        adjacency[0].setEdge(from, to, weight);
+      }
+    });
+    return adjacency[0];
+  }
+
+  /**
+   * Parses a graph file and hands its size and edges to a sink, without keeping anything itself. This lets grids
+   * that are too big for the heap be streamed straight into other storage.
+   *
+   * @param filename - The input file representing the graph
+   * @param sink - Receives the size and the edges
+   * @throws IOException - If the file can not be read, does not contain the size of the grid, or the sink fails
+   */
+  static void parse(String filename, EdgeSink sink) throws IOException {
+    GridGraphLoader loader = new GridGraphLoader(sink);
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long length = channel.size();
+      for (long start = 0; start < length; start += WINDOW) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, length - start));
+        loader.parse(buffer);
+      }
+    }
+    loader.finishNumber();
+    if (!loader.started) {
+      throw new IOException("File " + filename + " does not contain a graph");
+    }
+  }
+
+  /**
+   * Parses one mapped window of the file. An integer cut in half by the end of the window is carried over to the
+   * next window through the parser fields.
+   *
+   * @param buffer - The mapped bytes to parse
+   * @throws IOException - If the sink fails
+   */
+  private void parse(MappedByteBuffer buffer) throws IOException {
+    int limit = buffer.limit();
+    for (int i = 0; i < limit; i++) {
+      byte b = buffer.get(i);
+      if (b >= '0' && b <= '9') {
+        value = value * 10 + (b - '0');
+        inNumber = true;
+      } else if (b == '-') {
+        negative = true;
+        inNumber = true;
+      } else {
+        finishNumber();
+      }
+    }
+  }
+
+  /**
+   * Stores the integer that was just parsed, if any. The first integer is the size of the grid, and after that
+   * every third integer completes an edge.
+   *
+   * @throws IOException - If the sink fails
+   */
+  private void finishNumber() throws IOException {
+    if (!inNumber) {
+      return;
+    }
+    int number = negative ? -value : value;
+    if (fields == 0) {
+      sink.size(number);
+      started = true;
+    } else {
+      switch ((int) ((fields - 1) % 3)) {
+        case 0:
+          from = number;
+          break;
+        case 1:
+          to = number;
+          break;
+        default:
+          sink.edge(from - 1, to - 1, number);
+          break;
+      }
+    }
+    fields++;
+    value = 0;
+    negative = false;
+    inNumber = false;
+  }
+}
@@ -0,0 +1,478 @@
+package hw4.student;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders a grid graph and paths on it to PNG images without a display, for servers that have no window system.
+ * The picture matches GridGraphVisualizer, whose colors and edge bits it shares through GridGraphStyle: light gray
+ * edges, colored paths on top and dark gray vertex points on top of those, with the row of a vertex along the
+ * horizontal axis and its column growing upwards. Each grid step is a
+ * whole number of pixels, and everything is an axis aligned rectangle, so pixels are written straight into the
+ * image's int array instead of going through Java2D.
+ *
+ * Large pictures are cut into square tiles, each written to its own PNG file, so no image larger than a tile is ever
+ * held in memory. A tile only visits the grid vertices whose edges or points can reach its pixels, and only the paths
+ * whose bounding box overlaps those vertices, so tiles cost about the same no matter how big the grid is, and they
+ * are rendered and encoded in parallel on the common fork-join pool.
+ */
+
+public final class GridGraphRenderer {
+
+  /**
+   * Default number of pixels per grid step
+   */
+  public static final int DEFAULT_CELL_SIZE = 4;
+
+  /**
+   * Default side of a tile in pixels
+   */
+  public static final int DEFAULT_TILE_SIZE = 2048;
+
+  /**
+   * Length of one side of the grid
+   */
+  private final int size;
+
+  /**
+   * Which of the two forward neighbours each vertex (zero based index) is joined to, as GridGraphStyle.EDGE_UP and
+   * GridGraphStyle.EDGE_RIGHT bits
+   */
+  private final byte[] edges;
+
+  /**
+   * The paths to draw (one based vertices), in the order they were added
+   */
+  private final List<int[]> paths = new ArrayList<>();
+
+  /**
+   * Bounding box of each path as its lowest row, highest row, lowest column and highest column, in the same order as
+   * paths
+   */
+  private final List<int[]> pathBounds = new ArrayList<>();
+
+  /**
+   * Pixels per grid step
+   */
+  private int cellSize = DEFAULT_CELL_SIZE;
+
+  /**
+   * Creates a renderer for a size x size grid with no edges
+   *
+   * @param size - Length of one side of the grid
+   */
+  public GridGraphRenderer(int size) {
+    if (size < 1 || (long) size * size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Unsupported grid size " + size);
+    }
+    this.size = size;
+    this.edges = new byte[size * size];
+  }
+
+  /**
+   * Creates a renderer for every edge of a built graph. An edge is drawn if it exists in either direction.
+   *
+   * @param graph - The graph to draw
+   */
+  public GridGraphRenderer(GridGraph graph) {
+    this(graph.getSize());
+    int[] neighbours = new int[GridAdjacency.DIRECTIONS];
+    int[] weights = new int[GridAdjacency.DIRECTIONS];
+    for (int v = 1; v <= size * size; v++) {
+      int count = graph.getNeighbours(v, neighbours, weights);
+      for (int k = 0; k < count; k++) {
+        addEdge(v, neighbours[k]);
+      }
+    }
+  }
+
+  /**
+   * Adds an edge to be drawn
+   *
+   * @param from - One end of the edge (one based index)
+   * @param to - The other end of the edge (one based index), a grid neighbour of from
+   */
+  public void addEdge(int from, int to) {
+    int u = Math.min(from, to) - 1;
+    int v = Math.max(from, to) - 1;
+    if (u < 0 || v >= edges.length) {
+      throw new IllegalArgumentException("Edge " + from + " - " + to + " is not in the grid");
+    }
+    byte bit = GridGraphStyle.edgeBit(u + 1, v + 1, size);
+    if (bit == 0) {
+      throw new IllegalArgumentException("Vertices " + from + " and " + to + " are not adjacent in the grid");
+    }
+    edges[u] |= bit;
+  }
+
+  /**
+   * Adds a path to be drawn on top of the edges, in the next color of the palette
+   *
+   * @param path - The vertices of the path (one based indices), each a grid neighbour of the one before
+   */
+  public void addPath(int[] path) {
+    int[] bounds = {Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    for (int v : path) {
+      int row = (v - 1) / size;
+      int col = (v - 1) % size;
+      bounds[0] = Math.min(bounds[0], row);
+      bounds[1] = Math.max(bounds[1], row);
+      bounds[2] = Math.min(bounds[2], col);
+      bounds[3] = Math.max(bounds[3], col);
+    }
+    paths.add(path.clone());
+    pathBounds.add(bounds);
+  }
+
+  /**
+   * Sets how many pixels a grid step takes
+   *
+   * @param pixels - Pixels per grid step, at least 1
+   */
+  public void setCellSize(int pixels) {
+    if (pixels < 1 || (long) (size + 1) * pixels > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Unsupported cell size " + pixels);
+    }
+    cellSize = pixels;
+  }
+
+  /**
+   * Returns the side of the whole picture, which has a margin of one grid step around the grid
+   *
+   * @return - The width and height of the picture in pixels
+   */
+  public int getImageSize() {
+    return (size + 1) * cellSize;
+  }
+
+  /**
+   * Renders part of the picture into a new image
+   *
+   * @param x - Left edge of the part in pixels
+   * @param y - Top edge of the part in pixels
+   * @param width - Width of the part in pixels
+   * @param height - Height of the part in pixels
+   * @return - The rendered part
+   */
+  public BufferedImage render(int x, int y, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    new Tile(pixels, x, y, width, height).draw();
+    return image;
+  }
+
+  /**
+   * Renders the whole picture into one PNG file. Only meant for pictures that fit in memory, writeTiles handles
+   * larger ones.
+   *
+   * @param filename - The PNG file, replaced if it already exists
+   * @throws IOException - Throws exception if the file can not be written
+   */
+  public void writePng(String filename) throws IOException {
+    int side = getImageSize();
+    ImageIO.write(render(0, 0, side, side), "png", new File(filename));
+  }
+
+  /**
+   * Renders the picture as square tiles, each written to its own PNG file named tile_ROW_COLUMN.png in a directory,
+   * counting tiles from the top left. Tiles on the right and bottom border are cut to the picture. The tiles are
+   * rendered and encoded in parallel on the common fork-join pool.
+   *
+   * @param directory - Directory receiving the tiles, created if needed
+   * @param tileSize - Side of a tile in pixels
+   * @return - The number of tiles written
+   * @throws IOException - Throws exception if the directory or a tile can not be written
+   */
+  public int writeTiles(String directory, int tileSize) throws IOException {
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("Tiles must be at least one pixel, got " + tileSize);
+    }
+    File dir = new File(directory);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create directory " + directory);
+    }
+    int side = getImageSize();
+    int perSide = (side + tileSize - 1) / tileSize;
+    try {
+      IntStream.range(0, perSide * perSide).parallel().forEach(t -> {
+        int row = t / perSide;
+        int col = t % perSide;
+        int x = col * tileSize;
+        int y = row * tileSize;
+        BufferedImage tile = render(x, y, Math.min(tileSize, side - x), Math.min(tileSize, side - y));
+        try {
+          ImageIO.write(tile, "png", new File(dir, "tile_" + row + "_" + col + ".png"));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return perSide * perSide;
+  }
+
+  /**
+   * One part of the picture being drawn into a pixel array. Every drawing call is clipped to the part.
+   */
+  private final class Tile {
+
+    /**
+     * Pixels of the part, row by row
+     */
+    private final int[] pixels;
+
+    /**
+     * Position of the part in the whole picture, in pixels
+     */
+    private final int left;
+    private final int top;
+
+    /**
+     * Size of the part in pixels
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * Creates a part to draw into
+     *
+     * @param pixels - Pixels of the part, row by row
+     * @param left - Left edge of the part in the whole picture
+     * @param top - Top edge of the part in the whole picture
+     * @param width - Width of the part
+     * @param height - Height of the part
+     */
+    Tile(int[] pixels, int left, int top, int width, int height) {
+      this.pixels = pixels;
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+    }
+
+    /**
+     * Draws the edges, then the paths, then the vertex points that can reach this part
+     */
+    void draw() {
+      Arrays.fill(pixels, 0, width * height, GridGraphStyle.BACKGROUND);
+      int cell = cellSize;
+      int edgeWidth = Math.max(1, Math.round(0.05f * cell));
+      int pathWidth = Math.max(1, Math.round(0.1f * cell));
+      int dot = Math.max(1, Math.round(0.25f * cell));
+
+      //Rows run along x and columns along y, anything more than a step and a half away can not reach this part
+      int firstRow = Math.max(0, left / cell - 2);
+      int lastRow = Math.min(size - 1, (left + width) / cell);
+      int firstCol = Math.max(0, size - (top + height) / cell - 2);
+      int lastCol = Math.min(size - 1, size - top / cell + 1);
+
+      for (int r = firstRow; r <= lastRow; r++) {
+        for (int c = firstCol; c <= lastCol; c++) {
+          int v = r * size + c;
+          int x = px(v);
+          int y = py(v);
+          if ((edges[v] & GridGraphStyle.EDGE_UP) != 0) {
+            line(x, y, x, y - cell, edgeWidth, GridGraphStyle.EDGE_COLOR, 255);
+          }
+          if ((edges[v] & GridGraphStyle.EDGE_RIGHT) != 0) {
+            line(x, y, x + cell, y, edgeWidth, GridGraphStyle.EDGE_COLOR, 255);
+          }
+        }
+      }
+
+      //A path whose bounding box misses the vertices that can reach this part can not reach it either
+      for (int p = 0; p < paths.size(); p++) {
+        int[] bounds = pathBounds.get(p);
+        if (bounds[0] > lastRow || bounds[1] < firstRow || bounds[2] > lastCol || bounds[3] < firstCol) {
+          continue;
+        }
+        int[] path = paths.get(p);
+        int color = GridGraphStyle.PATH_COLORS[p % GridGraphStyle.PATH_COLORS.length];
+        for (int i = 0; i + 1 < path.length; i++) {
+          line(px(path[i] - 1), py(path[i] - 1), px(path[i + 1] - 1), py(path[i + 1] - 1), pathWidth, color,
+              GridGraphStyle.PATH_ALPHA);
+        }
+      }
+
+      boolean round = dot >= 4;
+      for (int r = firstRow; r <= lastRow; r++) {
+        for (int c = firstCol; c <= lastCol; c++) {
+          int v = r * size + c;
+          dot(px(v), py(v), dot, round);
+        }
+      }
+    }
+
+    /**
+     * Returns the x pixel of the centre of a vertex in the whole picture
+     *
+     * @param v - The vertex (zero based index)
+     * @return - The x coordinate
+     */
+    private int px(int v) {
+      return (v / size + 1) * cellSize;
+    }
+
+    /**
+     * Returns the y pixel of the centre of a vertex in the whole picture, which grows downwards
+     *
+     * @param v - The vertex (zero based index)
+     * @return - The y coordinate
+     */
+    private int py(int v) {
+      return (size - v % size) * cellSize;
+    }
+
+    /**
+     * Draws a horizontal or vertical line of some width between two points. Lines between points that are not in
+     * line, which a path of grid neighbours never has, are drawn as an L through the corner of the first point.
+     *
+     * @param x1 - x of the first point in the whole picture
+     * @param y1 - y of the first point in the whole picture
+     * @param x2 - x of the second point in the whole picture
+     * @param y2 - y of the second point in the whole picture
+     * @param lineWidth - Width of the line in pixels
+     * @param color - Color of the line
+     * @param alpha - Opacity of the line, out of 255
+     */
+    private void line(int x1, int y1, int x2, int y2, int lineWidth, int color, int alpha) {
+      int before = lineWidth / 2;
+      int after = lineWidth - before;
+      if (x1 != x2 && y1 != y2) {
+        line(x1, y1, x2, y1, lineWidth, color, alpha);
+        line(x2, y1, x2, y2, lineWidth, color, alpha);
+        return;
+      }
+      fill(Math.min(x1, x2) - before, Math.min(y1, y2) - before, Math.max(x1, x2) + after,
+          Math.max(y1, y2) + after, color, alpha);
+    }
+
+    /**
+     * Draws a vertex point centred on a pixel, round if it is big enough for that to show
+     *
+     * @param x - x of the centre in the whole picture
+     * @param y - y of the centre in the whole picture
+     * @param diameter - Diameter of the point in pixels
+     * @param round - Whether to draw a disc rather than a square
+     */
+    private void dot(int x, int y, int diameter, boolean round) {
+      int x0 = x - diameter / 2;
+      int y0 = y - diameter / 2;
+      if (!round) {
+        fill(x0, y0, x0 + diameter, y0 + diameter, GridGraphStyle.VERTEX_COLOR, 255);
+        return;
+      }
+      float radius = diameter / 2f;
+      for (int dy = 0; dy < diameter; dy++) {
+        float fy = dy + 0.5f - radius;
+        int half = (int) Math.round(Math.sqrt(Math.max(0, radius * radius - fy * fy)));
+        int mid = x0 + diameter / 2;
+        fill(mid - half, y0 + dy, mid + half + (diameter & 1), y0 + dy + 1, GridGraphStyle.VERTEX_COLOR, 255);
+      }
+    }
+
+    /**
+     * Fills a rectangle of the whole picture, clipped to this part, blending with what is already there
+     *
+     * @param x0 - Left edge, inclusive
+     * @param y0 - Top edge, inclusive
+     * @param x1 - Right edge, exclusive
+     * @param y1 - Bottom edge, exclusive
+     * @param color - The color
+     * @param alpha - Opacity, out of 255
+     */
+    private void fill(int x0, int y0, int x1, int y1, int color, int alpha) {
+      int fromX = Math.max(x0 - left, 0);
+      int toX = Math.min(x1 - left, width);
+      int fromY = Math.max(y0 - top, 0);
+      int toY = Math.min(y1 - top, height);
+      if (fromX >= toX) {
+        return;
+      }
+      for (int y = fromY; y < toY; y++) {
+        int row = y * width;
+        if (alpha == 255) {
+          Arrays.fill(pixels, row + fromX, row + toX, color);
+          continue;
+        }
+        for (int x = fromX; x < toX; x++) {
+          pixels[row + x] = blend(pixels[row + x], color, alpha);
+        }
+      }
+    }
+  }
+
+  /**
+   * Blends a color over another
+   *
+   * @param below - The color underneath
+   * @param above - The color on top
+   * @param alpha - Opacity of the color on top, out of 255
+   * @return - The blended color
+   */
+  private static int blend(int below, int above, int alpha) {
+    int rest = 255 - alpha;
+    int r = (((above >> 16) & 0xFF) * alpha + ((below >> 16) & 0xFF) * rest) / 255;
+    int g = (((above >> 8) & 0xFF) * alpha + ((below >> 8) & 0xFF) * rest) / 255;
+    int b = ((above & 0xFF) * alpha + (below & 0xFF) * rest) / 255;
+    return r << 16 | g << 8 | b;
+  }
+
+  /**
+   * Renders a graph file, and the shortest paths between any pairs of vertices given, to PNG tiles
+   *
+   * @param args - The graph file, the output directory, then optionally --cell followed by the cell size and --tile
+   * followed by the tile size, and pairs of source and target vertices
+   * @throws IOException - Throws exception if the graph can not be read or the tiles can not be written
+   */
+  public static void main(String[] args) throws IOException {
+    int cellSize = DEFAULT_CELL_SIZE;
+    int tileSize = DEFAULT_TILE_SIZE;
+    List<Integer> vertices = new ArrayList<>();
+    boolean valid = args.length >= 2;
+    for (int i = 2; i < args.length && valid; i++) {
+      if (args[i].equals("--cell") || args[i].equals("--tile")) {
+        valid = i + 1 < args.length;
+        if (valid && args[i].equals("--cell")) {
+          cellSize = Integer.parseInt(args[++i]);
+        } else if (valid) {
+          tileSize = Integer.parseInt(args[++i]);
+        }
+      } else {
+        vertices.add(Integer.parseInt(args[i]));
+      }
+    }
+    if (!valid || vertices.size() % 2 != 0) {
+      System.err.println("Usage: java -Djava.awt.headless=true hw4.student.GridGraphRenderer <graph.txt> <outDir> "
+          + "[--cell pixels] [--tile pixels] [source target]...");
+      System.exit(1);
+    }
+    long start = System.nanoTime();
+    GridGraph graph = new GridGraph();
+    graph.buildGraph(args[0]);
+    GridGraphRenderer renderer = new GridGraphRenderer(graph);
+    renderer.setCellSize(cellSize);
+    int[] sources = new int[vertices.size() / 2];
+    int[] targets = new int[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = vertices.get(2 * i);
+      targets[i] = vertices.get(2 * i + 1);
+    }
+    for (int[] path : graph.findPaths(sources, targets, true, SearchMode.DIJKSTRA)) {
+      renderer.addPath(path);
+    }
+    long loaded = System.nanoTime();
+    int tiles = renderer.writeTiles(args[1], tileSize);
+    System.out.println("Rendered a " + renderer.getImageSize() + " pixel picture as " + tiles + " tiles: loaded in "
+        + (loaded - start) / 1000000 + " ms, rendered in " + (System.nanoTime() - loaded) / 1000000 + " ms");
+  }
+}
@@ -0,0 +1,226 @@
+package hw4.student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes binary snapshots of a built grid graph, so large grids do not have to be parsed from text on
+ * every start. A snapshot is a fixed little endian header followed by the raw edge weight array of the
+ * GridAdjacency:
+ *
+ * <pre>
+ *   int  magic      "GGRF"
+ *   int  version    currently 1
+ *   int  size       length of one side of the grid
+ *   int  minWeight  smallest positive edge weight
+ *   int  maxWeight  largest edge weight
+ *   int  reserved   always 0
+ *   long checksum   CRC32C of the weight bytes
+ *   int  weights[4 * size * size]
+ * </pre>
+ *
+ * The checksum only covers the weights, so loading checks the header against them: the size has to match the length
+ * of the file, no weight may be negative, and minWeight and maxWeight have to bound every weight, since the bucket
+ * queue and the A* heuristic rely on them. The slots pointing outside of the grid have to be 0 as well, since the
+ * searches step along any slot with a positive weight without checking the border.
+ *
+ * Loading memory maps the file and copies the weights in bulk, so no parsing is involved. Run this class with a
+ * tab separated graph file and an output file to convert between the two formats.
+ */
+
+public final class GridGraphSnapshot {
+
+  /**
+   * Marks the start of every snapshot file ("GGRF" in ASCII)
+   */
+  private static final int MAGIC = 0x46524747;
+
+  /**
+   * Version of the layout written by this class
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Number of bytes before the weights start
+   */
+  private static final int HEADER_BYTES = 32;
+
+  /**
+   * Largest number of bytes mapped or buffered at once
+   */
+  private static final int WINDOW = 1 << 30;
+
+  /**
+   * Number of bytes written to the file at once when saving
+   */
+  private static final int WRITE_CHUNK = 1 << 20;
+
+  /**
+   * Only static methods are provided
+   */
+  private GridGraphSnapshot() {
+  }
+
+  /**
+   * Writes an adjacency store to a snapshot file, replacing the file if it exists
+   *
+   * @param adjacency - The adjacency store to write
+   * @param filename - The snapshot file
+   * @throws IOException - If the file can not be written
+   */
+  static void write(GridAdjacency adjacency, String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      int[] weights = adjacency.weights;
+      CRC32C crc = new CRC32C();
+      ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+      channel.position(HEADER_BYTES);
+      for (int i = 0; i < weights.length; ) {
+        chunk.clear();
+        int count = Math.min(weights.length - i, WRITE_CHUNK / Integer.BYTES);
+        chunk.asIntBuffer().put(weights, i, count);
+        chunk.limit(count * Integer.BYTES);
+        crc.update(chunk);
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+          channel.write(chunk);
+        }
+        i += count;
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(adjacency.size)
+          .putInt(adjacency.minWeight).putInt(adjacency.maxWeight).putInt(0)
+          .putLong(crc.getValue());
+      header.flip();
+      channel.position(0);
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+    }
+  }
+
+  /**
+   * Reads an adjacency store from a snapshot file
+   *
+   * @param filename - The snapshot file
+   * @return - The adjacency store saved in the file
+   * @throws IOException - If the file can not be read, is not a snapshot, has an unknown version or is corrupt
+   */
+  static GridAdjacency read(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("File " + filename + " is not a grid graph snapshot");
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("File " + filename + " is not a grid graph snapshot");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version " + version + " in " + filename);
+      }
+      int size = header.getInt();
+      int minWeight = header.getInt();
+      int maxWeight = header.getInt();
+      header.getInt();
+      long checksum = header.getLong();
+
+      //The size is checked against the file before anything is allocated for it
+      if (size < 0 || (long) size * size * GridAdjacency.DIRECTIONS > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot " + filename + " has an invalid size " + size);
+      }
+      long slots = (long) size * size * GridAdjacency.DIRECTIONS;
+      if (channel.size() != HEADER_BYTES + slots * Integer.BYTES) {
+        throw new IOException("Snapshot " + filename + " is " + channel.size() + " bytes long but a " + size + "x"
+            + size + " grid needs " + (HEADER_BYTES + slots * Integer.BYTES));
+      }
+      GridAdjacency adjacency = new GridAdjacency(size);
+      int[] weights = adjacency.weights;
+
+      CRC32C crc = new CRC32C();
+      long position = HEADER_BYTES;
+      for (int i = 0; i < weights.length; ) {
+        int count = Math.min(weights.length - i, WINDOW / Integer.BYTES);
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Integer.BYTES);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        window.asIntBuffer().get(weights, i, count);
+        crc.update(window);
+        position += (long) count * Integer.BYTES;
+        i += count;
+      }
+      if (crc.getValue() != checksum) {
+        throw new IOException("Snapshot " + filename + " failed its checksum");
+      }
+      checkWeights(adjacency, minWeight, maxWeight, filename);
+
+      adjacency.minWeight = minWeight;
+      adjacency.maxWeight = maxWeight;
+      return adjacency;
+    }
+  }
+
+  /**
+   * Checks that the weights are valid for the grid and that the weight bounds of a header hold for them. The bounds
+   * may be wider than the weights, since they are only ever widened when edges change, but never narrower.
+   *
+   * @param adjacency - The adjacency store holding the weights read from the snapshot
+   * @param minWeight - The smallest positive weight according to the header
+   * @param maxWeight - The largest weight according to the header
+   * @param filename - The snapshot file, for the error message
+   * @throws IOException - If a weight is negative, leaves the grid or falls outside the bounds
+   */
+  private static void checkWeights(GridAdjacency adjacency, int minWeight, int maxWeight, String filename)
+      throws IOException {
+    int[] weights = adjacency.weights;
+    int min = Integer.MAX_VALUE;
+    int max = 0;
+    for (int i = 0; i < weights.length; i++) {
+      int weight = weights[i];
+      if (weight < 0) {
+        throw new IOException("Snapshot " + filename + " has a negative edge weight " + weight);
+      }
+      if (weight > 0) {
+        if (!adjacency.hasNeighbour(i / GridAdjacency.DIRECTIONS, i % GridAdjacency.DIRECTIONS)) {
+          throw new IOException("Snapshot " + filename + " has an edge leaving the grid from vertex "
+              + (i / GridAdjacency.DIRECTIONS + 1));
+        }
+        min = Math.min(min, weight);
+        max = Math.max(max, weight);
+      }
+    }
+    boolean valid = max == 0 ? minWeight >= 0 && maxWeight >= 0
+        : minWeight >= 1 && minWeight <= min && maxWeight >= max;
+    if (!valid) {
+      throw new IOException("Snapshot " + filename + " claims weights between " + minWeight + " and " + maxWeight
+          + " but holds weights between " + (max == 0 ? 0 : min) + " and " + max);
+    }
+  }
+
+  /**
+   * Converts a tab separated graph file, in the format read by GridGraph.buildGraph, into a snapshot file.
+   *
+   * @param args - The tab separated input file followed by the snapshot file to write
+   * @throws IOException - If either file can not be used
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: java hw4.student.GridGraphSnapshot <graph.txt> <graph.bin>");
+      System.exit(1);
+    }
+    long start = System.nanoTime();
+    GridAdjacency adjacency = GridGraphLoader.load(args[0]);
+    long parsed = System.nanoTime();
+    write(adjacency, args[1]);
+    long written = System.nanoTime();
+    System.out.println("Converted " + adjacency.size + "x" + adjacency.size + " grid: parsed in "
+        + (parsed - start) / 1000000 + " ms, written in " + (written - parsed) / 1000000 + " ms");
+  }
+}
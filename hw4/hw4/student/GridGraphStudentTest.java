@@ -0,0 +1,500 @@
+package hw4.student;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32C;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tester class for GridGraph and the engines behind it. Every search is checked against a plain Dijkstra written
+ * here, on random grids with walls and one-way edges.
+ */
+
+public class GridGraphStudentTest {
+
+  /**
+   * Length of one side of the random grids
+   */
+  private static final int SIZE = 40;
+
+  /**
+   * Number of random source and target pairs tried per grid
+   */
+  private static final int PAIRS = 40;
+
+  private Random random;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setupUnit() throws Exception {
+    this.random = new Random(331);
+  }
+
+  @Test
+  public void dijkstraTests() throws IOException {
+    //Weights this large are searched with the heap, not with Dial's bucket queue
+    assertSameCosts(randomGridGraph(5000), 5000, SearchMode.DIJKSTRA, true);
+  }
+
+  @Test
+  public void breadthFirstTests() throws IOException {
+    GridGraph graph = randomGridGraph(5000);
+    assertSameCosts(graph, 5000, SearchMode.DIJKSTRA, false);
+    //The breadth-first searches must not leave anything behind that changes weighted answers
+    assertSameCosts(graph, 5000, SearchMode.DIJKSTRA, true);
+  }
+
+  @Test
+  public void aStarTests() throws IOException {
+    for (int maxWeight : new int[] {9, 5000}) {
+      GridGraph graph = randomGridGraph(maxWeight);
+      for (boolean weighted : new boolean[] {true, false}) {
+        assertSameCosts(graph, maxWeight, SearchMode.A_STAR, weighted);
+      }
+    }
+  }
+
+  @Test
+  public void bidirectionalTests() throws IOException {
+    for (int maxWeight : new int[] {9, 5000}) {
+      GridGraph graph = randomGridGraph(maxWeight);
+      for (boolean weighted : new boolean[] {true, false}) {
+        assertSameCosts(graph, maxWeight, SearchMode.BIDIRECTIONAL, weighted);
+      }
+    }
+  }
+
+  @Test
+  public void contractionHierarchyTests() throws IOException {
+    for (int maxWeight : new int[] {9, 5000}) {
+      GridGraph graph = randomGridGraph(maxWeight);
+      for (boolean weighted : new boolean[] {true, false}) {
+        graph.buildContractionHierarchy(weighted);
+        assertSameCosts(graph, maxWeight, SearchMode.CONTRACTION_HIERARCHY, weighted);
+      }
+    }
+  }
+
+  @Test
+  public void altTests() throws IOException {
+    for (int maxWeight : new int[] {9, 5000}) {
+      GridGraph graph = randomGridGraph(maxWeight);
+      for (boolean weighted : new boolean[] {true, false}) {
+        graph.buildLandmarks(4, weighted);
+        assertSameCosts(graph, maxWeight, SearchMode.ALT, weighted);
+      }
+    }
+  }
+
+  @Test
+  public void deltaSteppingTests() throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int maxWeight : new int[] {9, 5000}) {
+        GridGraph graph = randomGridGraph(maxWeight);
+        for (int i = 0; i < 4; i++) {
+          int s = 1 + random.nextInt(SIZE * SIZE);
+          for (boolean weighted : new boolean[] {true, false}) {
+            int[] expected = distances(graph, s, weighted);
+            //A width of 1 keeps many buckets apart, the default one mixes several weights in a bucket
+            for (ShortestPathTree tree : new ShortestPathTree[] {graph.parallelShortestPathTree(s, weighted),
+                graph.parallelShortestPathTree(s, weighted, 1, pool)}) {
+              String _message = message(maxWeight, "from " + s + (weighted ? " weighted" : " unweighted"),
+                  "parallelShortestPathTree()", "the distances of Dijkstra's algorithm");
+              System.out.println(_message);
+              assertTree(_message, graph, tree, expected, weighted);
+            }
+          }
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void repairTests() throws IOException {
+    String file = randomGraph(SIZE, 20);
+    GridGraph graph = new GridGraph();
+    graph.buildGraph(file);
+    graph.enableTreeCache(16);
+    GridGraph fresh = new GridGraph();
+    fresh.buildGraph(file);
+    int[] sources = new int[4];
+    for (int k = 0; k < sources.length; k++) {
+      sources[k] = 1 + random.nextInt(SIZE * SIZE);
+      graph.getShortestPathTree(sources[k], true);
+      graph.getShortestPathTree(sources[k], false);
+    }
+    for (int round = 0; round < 10; round++) {
+      //Edges are removed, made heavier, made lighter and added, in random batches
+      int count = 1 + random.nextInt(30);
+      int[] us = new int[count];
+      int[] vs = new int[count];
+      int[] ws = new int[count];
+      for (int i = 0; i < count; i++) {
+        us[i] = 1 + random.nextInt(SIZE * SIZE);
+        vs[i] = randomNeighbour(us[i]);
+        ws[i] = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(20);
+      }
+      graph.updateEdges(us, vs, ws);
+      fresh.updateEdges(us, vs, ws);
+      for (int s : sources) {
+        for (boolean weighted : new boolean[] {true, false}) {
+          String _message = message(20, "from " + s + (weighted ? " weighted" : " unweighted") + " after update "
+              + round, "ShortestPathTree.repair()", "the distances of a fresh tree");
+          System.out.println(_message);
+          ShortestPathTree expected = fresh.getShortestPathTree(s, weighted);
+          int[] distances = new int[SIZE * SIZE];
+          for (int v = 1; v <= distances.length; v++) {
+            distances[v - 1] = expected.distanceTo(v);
+          }
+          assertArrayEquals(_message, distances(fresh, s, weighted), distances);
+          assertTree(_message, graph, graph.getShortestPathTree(s, weighted), distances, weighted);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void dialTests() throws IOException {
+    //Weights up to BucketQueue.MAX_WEIGHT use the bucket queue, and 1023 leaves no spare bucket in the ring
+    for (int maxWeight : new int[] {9, 1023}) {
+      assertSameCosts(randomGridGraph(maxWeight), maxWeight, SearchMode.DIJKSTRA, true);
+    }
+  }
+
+  @Test
+  public void metricsTests() throws IOException {
+    GridGraph graph = randomGridGraph(9);
+    SearchMetrics metrics = graph.enableMetrics();
+    for (int i = 0; i < PAIRS; i++) {
+      int s = 1 + random.nextInt(SIZE * SIZE);
+      //Every other query goes from a vertex to itself, which has to be counted like any other
+      int t = i % 2 == 0 ? s : 1 + random.nextInt(SIZE * SIZE);
+      graph.findShortestPath(s, t, true);
+    }
+    String _message = message(9, PAIRS + " queries", "getMetrics().getQueries()", "" + PAIRS);
+    System.out.println(_message);
+    assertEquals(_message, PAIRS, metrics.getQueries(SearchMode.DIJKSTRA, true));
+    assertEquals(_message, "", graph.findShortestPath(5, 5, true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sameInvalidVertexTests() throws IOException {
+    GridGraph graph = randomGridGraph(9);
+    String _message = message(9, "0 -> 0", "findShortestPath()", "should throw IllegalArgumentException");
+    System.out.println(_message);
+    graph.findShortestPath(0, 0, true);
+  }
+
+  @Test
+  public void jumpPointTests() throws IOException {
+    //With every weight 1 weighted queries jump too, with mixed weights they fall back to A*
+    for (int maxWeight : new int[] {1, 9}) {
+      GridGraph graph = randomGridGraph(maxWeight);
+      for (boolean weighted : new boolean[] {true, false}) {
+        assertSameCosts(graph, maxWeight, SearchMode.JUMP_POINT, weighted);
+      }
+    }
+  }
+
+  @Test
+  public void snapshotTests() throws IOException {
+    GridGraph graph = randomGridGraph(5000);
+    File snapshot = File.createTempFile("grid", ".bin");
+    snapshot.deleteOnExit();
+    graph.saveSnapshot(snapshot.getPath());
+    GridGraph loaded = new GridGraph();
+    loaded.loadSnapshot(snapshot.getPath());
+
+    String _message = message(5000, "saveSnapshot()", "loadSnapshot()", "the same edges and weights");
+    System.out.println(_message);
+    assertEquals(_message, graph.getSize(), loaded.getSize());
+    int[] neighbours = new int[4];
+    int[] weights = new int[4];
+    int[] loadedNeighbours = new int[4];
+    int[] loadedWeights = new int[4];
+    for (int v = 1; v <= SIZE * SIZE; v++) {
+      int count = graph.getNeighbours(v, neighbours, weights);
+      assertEquals(_message, count, loaded.getNeighbours(v, loadedNeighbours, loadedWeights));
+      assertArrayEquals(_message, Arrays.copyOf(neighbours, count), Arrays.copyOf(loadedNeighbours, count));
+      assertArrayEquals(_message, Arrays.copyOf(weights, count), Arrays.copyOf(loadedWeights, count));
+    }
+    for (int i = 0; i < PAIRS; i++) {
+      int s = 1 + random.nextInt(SIZE * SIZE);
+      int t = 1 + random.nextInt(SIZE * SIZE);
+      assertArrayEquals(_message, graph.findPath(s, t, true), loaded.findPath(s, t, true));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void snapshotBorderTests() throws IOException {
+    GridGraph graph = randomGridGraph(5000);
+    File snapshot = File.createTempFile("grid", ".bin");
+    snapshot.deleteOnExit();
+    graph.saveSnapshot(snapshot.getPath());
+
+    //Give the last vertex of the first row an edge to the right, out of the grid, and fix up the checksum
+    byte[] bytes = Files.readAllBytes(snapshot.toPath());
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(32 + Integer.BYTES * 4 * (SIZE - 1), 5);
+    CRC32C crc = new CRC32C();
+    crc.update(bytes, 32, bytes.length - 32);
+    buffer.putLong(24, crc.getValue());
+    Files.write(snapshot.toPath(), bytes);
+
+    String _message = message(5000, "a snapshot with an edge leaving the grid", "loadSnapshot()",
+        "should throw IOException");
+    System.out.println(_message);
+    new GridGraph().loadSnapshot(snapshot.getPath());
+  }
+
+  @Test
+  public void tiledTests() throws IOException {
+    String file = randomGraph(SIZE, 5000);
+    GridGraph graph = new GridGraph();
+    graph.buildGraph(file);
+    File tiledFile = File.createTempFile("grid", ".tiles");
+    tiledFile.deleteOnExit();
+    //Tiles of 16 do not divide the grid, so the last row and column of tiles are cut short
+    TiledGridGraph.convert(file, tiledFile.getPath(), 16);
+    try (TiledGridGraph tiled = new TiledGridGraph(tiledFile.getPath(), 4)) {
+      assertEquals(graph.getSize(), tiled.getSize());
+      //Every query reuses the search scratch of this thread, so each one has to start from a clean slate
+      for (int i = 0; i < PAIRS; i++) {
+        int s = 1 + random.nextInt(SIZE * SIZE);
+        int t = 1 + random.nextInt(SIZE * SIZE);
+        for (boolean weighted : new boolean[] {true, false}) {
+          int expected = distances(graph, s, weighted)[t - 1];
+          String _message = message(5000, s + " -> " + t + (weighted ? " weighted" : " unweighted"),
+              "TiledGridGraph.findPath()", "" + expected);
+          System.out.println(_message);
+          assertEquals(_message, expected, cost(graph, tiled.findPath(s, t, weighted), weighted));
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds a graph from a random grid
+   *
+   * @param maxWeight - Largest edge weight
+   * @return - The built graph
+   * @throws IOException - Throws exception if the grid file can not be written
+   */
+  private GridGraph randomGridGraph(int maxWeight) throws IOException {
+    GridGraph graph = new GridGraph();
+    graph.buildGraph(randomGraph(SIZE, maxWeight));
+    return graph;
+  }
+
+  /**
+   * Checks that a search mode finds paths that cost the same as a plain Dijkstra between random pairs of vertices
+   *
+   * @param graph - The graph, with anything the mode needs already built
+   * @param maxWeight - Largest edge weight of the graph, for the messages
+   * @param mode - The search mode
+   * @param weighted - Whether edge weights are used or every edge counts as 1
+   */
+  private void assertSameCosts(GridGraph graph, int maxWeight, SearchMode mode, boolean weighted) {
+    for (int i = 0; i < PAIRS; i++) {
+      int s = 1 + random.nextInt(SIZE * SIZE);
+      int t = 1 + random.nextInt(SIZE * SIZE);
+      int expected = distances(graph, s, weighted)[t - 1];
+      String _message = message(maxWeight, s + " -> " + t + (weighted ? " weighted" : " unweighted"),
+          "findPath(" + mode + ")", "a path of cost " + expected);
+      System.out.println(_message);
+      assertEquals(_message, expected, cost(graph, graph.findPath(s, t, weighted, mode), weighted));
+    }
+  }
+
+  /**
+   * Writes a random grid to a temporary file. About one in seven neighbour pairs is split by a wall, about one in
+   * five of the rest is only joined one way, and the others are joined both ways with independent weights.
+   *
+   * @param size - Length of one side of the grid
+   * @param maxWeight - Largest edge weight
+   * @return - The name of the file
+   * @throws IOException - Throws exception if the file can not be written
+   */
+  private String randomGraph(int size, int maxWeight) throws IOException {
+    File file = File.createTempFile("grid", ".txt");
+    file.deleteOnExit();
+    try (PrintWriter out = new PrintWriter(file)) {
+      out.println(size);
+      for (int v = 1; v <= size * size; v++) {
+        if (v % size != 0) {
+          joinRandomly(out, v, v + 1, maxWeight);
+        }
+        if (v + size <= size * size) {
+          joinRandomly(out, v, v + size, maxWeight);
+        }
+      }
+    }
+    return file.getPath();
+  }
+
+  /**
+   * Writes the edges between two neighbours, if any
+   *
+   * @param out - Where the edges are written
+   * @param u - One vertex (one based index)
+   * @param v - Its neighbour (one based index)
+   * @param maxWeight - Largest edge weight
+   */
+  private void joinRandomly(PrintWriter out, int u, int v, int maxWeight) {
+    if (random.nextInt(7) == 0) {
+      return;
+    }
+    int ways = random.nextInt(5);
+    if (ways != 1) {
+      out.println(u + "\t" + v + "\t" + (1 + random.nextInt(maxWeight)));
+    }
+    if (ways != 0) {
+      out.println(v + "\t" + u + "\t" + (1 + random.nextInt(maxWeight)));
+    }
+  }
+
+  /**
+   * Picks a random grid neighbour of a vertex
+   *
+   * @param v - The vertex (one based index)
+   * @return - One of its grid neighbours (one based index)
+   */
+  private int randomNeighbour(int v) {
+    while (true) {
+      int dir = random.nextInt(4);
+      if (dir == 0 && v % SIZE != 0) {
+        return v + 1;
+      } else if (dir == 1 && v % SIZE != 1) {
+        return v - 1;
+      } else if (dir == 2 && v + SIZE <= SIZE * SIZE) {
+        return v + SIZE;
+      } else if (dir == 3 && v > SIZE) {
+        return v - SIZE;
+      }
+    }
+  }
+
+  /**
+   * Computes the distance from a source to every vertex with a plain Dijkstra over getNeighbours
+   *
+   * @param graph - The graph
+   * @param s - Source vertex (one based index)
+   * @param weighted - Whether edge weights are used or every edge counts as 1
+   * @return - The distance to each vertex (zero based index), -1 if it can not be reached
+   */
+  private static int[] distances(GridGraph graph, int s, boolean weighted) {
+    int n = graph.getSize() * graph.getSize();
+    int[] dist = new int[n];
+    Arrays.fill(dist, -1);
+    boolean[] done = new boolean[n];
+    int[] neighbours = new int[4];
+    int[] weights = new int[4];
+    PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+    dist[s - 1] = 0;
+    queue.add(new long[] {0, s});
+    while (!queue.isEmpty()) {
+      int u = (int) queue.poll()[1];
+      if (done[u - 1]) {
+        continue;
+      }
+      done[u - 1] = true;
+      int count = graph.getNeighbours(u, neighbours, weights);
+      for (int k = 0; k < count; k++) {
+        int v = neighbours[k];
+        int d = dist[u - 1] + (weighted ? weights[k] : 1);
+        if (dist[v - 1] == -1 || d < dist[v - 1]) {
+          dist[v - 1] = d;
+          queue.add(new long[] {d, v});
+        }
+      }
+    }
+    return dist;
+  }
+
+  /**
+   * Adds up the cost of a path, making sure each step is an edge of the graph
+   *
+   * @param graph - The graph
+   * @param path - The vertices of the path (one based indices)
+   * @param weighted - Whether edge weights are used or every edge counts as 1
+   * @return - The cost of the path, -1 for an empty path
+   */
+  private static int cost(GridGraph graph, int[] path, boolean weighted) {
+    if (path.length == 0) {
+      return -1;
+    }
+    int[] neighbours = new int[4];
+    int[] weights = new int[4];
+    int total = 0;
+    for (int i = 0; i + 1 < path.length; i++) {
+      int count = graph.getNeighbours(path[i], neighbours, weights);
+      int k = 0;
+      while (k < count && neighbours[k] != path[i + 1]) {
+        k++;
+      }
+      assertTrue("No edge from " + path[i] + " to " + path[i + 1], k < count);
+      total += weighted ? weights[k] : 1;
+    }
+    return total;
+  }
+
+  /**
+   * Checks the distances of a tree, and that the path it gives to every vertex costs that distance
+   *
+   * @param _message - Message shown if the check fails
+   * @param graph - The graph the tree was built on
+   * @param tree - The tree
+   * @param expected - The expected distance to each vertex (zero based index), -1 if it can not be reached
+   * @param weighted - Whether edge weights are used or every edge counts as 1
+   */
+  private static void assertTree(String _message, GridGraph graph, ShortestPathTree tree, int[] expected,
+      boolean weighted) {
+    for (int v = 1; v <= expected.length; v++) {
+      assertEquals(_message + "Vertex: " + v + "\n", expected[v - 1], tree.distanceTo(v));
+      int[] path = tree.pathTo(v);
+      assertEquals(_message + "Path to: " + v + "\n", expected[v - 1], cost(graph, path, weighted));
+      if (path.length > 0) {
+        assertEquals(_message + "Path to: " + v + "\n", tree.getSource(), path[0]);
+      }
+    }
+  }
+
+  private String message(int maxWeight, String input, String test, String output) {
+    return "\n" +
+        "Input Graph: random " + SIZE + " x " + SIZE + " grid, weights up to " + maxWeight + "\n" +
+        "Input: " + input + "\n" +
+        "Tested Method: " + test + "\n" +
+        "Expected Output: " + output + "\n";
+  }
+
+  public static void main(String[] args) {
+    Result result = JUnitCore.runClasses(GridGraphStudentTest.class);
+    for (Failure failure : result.getFailures()) {
+      System.out.println(failure.toString());
+    }
+
+  }
+
+}
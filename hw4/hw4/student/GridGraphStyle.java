@@ -0,0 +1,64 @@
+package hw4.student;
+
+/**
+ * What GridGraphVisualizer and GridGraphRenderer have in common, so a picture rendered on a server looks the same as
+ * the maze on screen: the colors, and the bits that store the edges between grid neighbours. Colors are packed as
+ * 0xRRGGBB so the renderer can write them straight into pixels without loading any display classes.
+ */
+
+final class GridGraphStyle {
+
+  /**
+   * Colors of the paths, used in turn. A qualitative palette of 12 distinct colors from colorbrewer2.org.
+   */
+  static final int[] PATH_COLORS = {
+      0xA6CEE3, 0x1F78B4, 0xB2DF8A, 0x33A02C, 0xFB9A99, 0xE31A1C,
+      0xFDBF6F, 0xFF7F00, 0xCAB2D6, 0x6A3D9A, 0xFFFF99, 0xB15928
+  };
+
+  /**
+   * Opacity of a path, out of 255
+   */
+  static final int PATH_ALPHA = 225;
+
+  /**
+   * Colors of the background, the edges and the vertex points
+   */
+  static final int BACKGROUND = 0xFFFFFF;
+  static final int EDGE_COLOR = 0xC0C0C0;
+  static final int VERTEX_COLOR = 0x404040;
+
+  /**
+   * Bit stored for vertex v when v and v + 1, the vertex drawn above it, are joined either way
+   */
+  static final byte EDGE_UP = 1;
+
+  /**
+   * Bit stored for vertex v when v and v + size, the vertex drawn to its right, are joined either way
+   */
+  static final byte EDGE_RIGHT = 2;
+
+  /**
+   * Only constants and static methods are provided
+   */
+  private GridGraphStyle() {
+  }
+
+  /**
+   * Finds the bit that stores an edge between two vertices, which is stored for the lower of the two
+   *
+   * @param a - The lower vertex (one based index)
+   * @param b - The higher vertex (one based index)
+   * @param size - Length of one side of the grid
+   * @return - EDGE_UP or EDGE_RIGHT, or 0 if the two are not grid neighbours
+   */
+  static byte edgeBit(int a, int b, int size) {
+    if (a < 1 || b > size * size) {
+      return 0;
+    }
+    if (b - a == 1 && (a - 1) / size == (b - 1) / size) {
+      return EDGE_UP;
+    }
+    return b - a == size ? EDGE_RIGHT : 0;
+  }
+}
@@ -11,9 +11,12 @@ package hw4.student;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import javax.swing.*;
 
 import java.util.List;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Arrays;
 import java.util.Random;
@@ -22,6 +25,15 @@ import java.util.Random;
  * A Maze visualizer that visualizes an n x n maze. Methods are
  * provided to specify edges. Additionally, one or more paths
  * can also be drawn.
+ *
+ * The mouse wheel zooms in and out around the pointer, dragging
+ * pans, and a double click shows the whole maze again. Only the
+ * part of the maze in view is drawn. Once the vertices get smaller
+ * than a few pixels, the maze is drawn pixel by pixel instead of
+ * shape by shape, and when more than one vertex falls on a pixel,
+ * each pixel is shaded by how many edges there are in its part of
+ * the maze. Either way the work for one frame depends on the size
+ * of the window, not the size of the maze.
  */
 
 @SuppressWarnings("deprecation")
@@ -40,35 +52,86 @@ public class GridGraphVisualizer extends JApplet {
 
   }
 
-  final static Color bg = Color.white;
+  final static Color bg = new Color( GridGraphStyle.BACKGROUND );
   final static Color fg = Color.black;
 
-  // 12 distinct colors to use for drawing paths.
-  // obtained from www.colorbrewer2.org
-  private static int[] qColors = {
-      166,206,227,
-      31,120,180,
-      178,223,138,
-      51,160,44,
-      251,154,153,
-      227,26,28,
-      253,191,111,
-      255,127,0,
-      202,178,214,
-      106,61,154,
-      255,255,153,
-      177,89,40
-  };
+  // colors of the edges and the vertex points, the same as GridGraphRenderer's
+  private static final Color EDGE_COLOR = new Color( GridGraphStyle.EDGE_COLOR );
+  private static final Color VERTEX_COLOR = new Color( GridGraphStyle.VERTEX_COLOR );
+
+  // paths are drawn in the colors of GridGraphStyle.PATH_COLORS in turn
   private int cOffset; // to select starting color
 
   // The number of vertices in one direction of the grid
   private int N;
 
-  // list of edges to be drawn
-  private List<Pair<Integer, Integer>> edgeList = null;
-
-  // list of paths to be drawn
-  private List<List<Integer>> pathList = null;
+  // Edges between neighbouring vertices, as bits per vertex so the
+  // edges in view can be found without looking at the others. Bit
+  // EDGE_UP joins vertex v to v+1 and bit EDGE_RIGHT joins it to v+N,
+  // indexed from zero, as in GridGraphRenderer.
+  private byte[] edgeBits = null;
+  private static final int EDGE_UP = GridGraphStyle.EDGE_UP;
+  private static final int EDGE_RIGHT = GridGraphStyle.EDGE_RIGHT;
+
+  // the other edges to be drawn, which do not join neighbours, as
+  // pairs of vertices: edge k goes from otherEdges[2k] to otherEdges[2k+1]
+  private int[] otherEdges = new int[16];
+  private int otherEdgeCount = 0;
+
+  // Edge density pyramid for drawing zoomed out. Level k holds one
+  // byte per 2^k x 2^k block of vertices, 0 when the block has no
+  // edges and 255 when every vertex has both its edges. Built when
+  // first needed after the edges change.
+  private byte[][] density = null;
+
+  // list of paths to be drawn, each an array of vertices
+  private List<int[]> pathList = null;
+
+  // grid space bounding box of each path, in the same order as pathList
+  private List<Rectangle2D> pathBounds = null;
+
+  // Cached off-screen layers. The edges and the vertex points only change when an
+  // edge is added or the window is resized, so they are drawn once and then copied
+  // to the screen. Vertex points go in their own transparent layer so they stay on
+  // top of the paths, like when everything was drawn on every repaint.
+  private BufferedImage edgeLayer = null;
+  private BufferedImage vertexLayer = null;
+
+  // radius of a vertex point and thickness of an edge, in grid units
+  private static final float RADIUS = 0.125f;
+  private static final float LINE_THICKNESS = 0.05f;
+
+  // The part of the grid in view, in grid units, and the view the
+  // cached layers were drawn for. The whole grid is 0 to N+1 both ways.
+  private Rectangle2D.Double view = null;
+  private Rectangle2D.Double layerView = null;
+
+  // The smallest view, in grid units
+  private static final double MIN_VIEW = 4;
+
+  // Pixels per grid unit below which the maze is drawn pixel by pixel,
+  // and below which it is shaded by edge density
+  private static final double SHAPE_SCALE = 8;
+  private static final double PIXEL_SCALE = 2;
+
+  // where the last drag event was, in pixels
+  private Point dragFrom = null;
+
+  // Progress of the search being watched, or null, and the layer it
+  // is drawn into, for the view in frontierView. Only used on the
+  // event thread.
+  private FrontierQueue frontier = null;
+  private BufferedImage frontierLayer = null;
+  private Rectangle2D.Double frontierView = null;
+  private int[] frontierTaken = null;
+  private Timer frameTimer = null;
+
+  // colors of relaxed and settled vertices of a watched search
+  private static final Color RELAXED_COLOR = new Color( 253, 191, 111, 120 );
+  private static final Color SETTLED_COLOR = new Color( 255, 127, 0, 150 );
+
+  // shortest time between two frames of a watched search, in milliseconds
+  private static final int FRAME_MILLIS = 33;
 
   /**
    * Creates a maze visualizer for an n x n square maze with
@@ -78,10 +141,30 @@ public class GridGraphVisualizer extends JApplet {
    */
   public GridGraphVisualizer( int n ) {
     this.N = n;
-    edgeList = new LinkedList<>();
-    pathList = new LinkedList<>();
+    edgeBits = new byte[n*n];
+    pathList = new ArrayList<>();
+    pathBounds = new ArrayList<>();
     Random rg = new Random();
-    cOffset = 3 * rg.nextInt(qColors.length/3);
+    cOffset = rg.nextInt( GridGraphStyle.PATH_COLORS.length );
+    view = new Rectangle2D.Double( 0, 0, N+1, N+1 );
+  }
+
+  /**
+   * Creates a maze visualizer showing every edge of a grid graph.
+   * @param graph The graph, which must have been built.
+   */
+  public GridGraphVisualizer( GridGraph graph ) {
+    this( graph.getSize() );
+    int[] neighbours = new int[4];
+    int[] weights = new int[4];
+    for( int v = 1; v <= N*N; v++ ) {
+      int count = graph.getNeighbours( v, neighbours, weights );
+      for( int k = 0; k < count; k++ ) {
+        // a two-way edge shows up from both ends, but storing a grid edge only sets a bit, so one-way edges
+        // towards lower vertices are kept too
+        storeEdge( v, neighbours[k] );
+      }
+    }
   }
 
   /**
@@ -91,6 +174,72 @@ public class GridGraphVisualizer extends JApplet {
   public void init() {
     setBackground(bg);
     setForeground(fg);
+
+    addMouseWheelListener( e -> zoom( e.getX(), e.getY(), Math.pow( 1.25, e.getPreciseWheelRotation() ) ) );
+    MouseAdapter drag = new MouseAdapter() {
+      public void mousePressed( MouseEvent e ) {
+        dragFrom = e.getPoint();
+      }
+      public void mouseDragged( MouseEvent e ) {
+        if( dragFrom != null ) {
+          pan( e.getX() - dragFrom.x, e.getY() - dragFrom.y );
+          dragFrom = e.getPoint();
+        }
+      }
+      public void mouseReleased( MouseEvent e ) {
+        dragFrom = null;
+      }
+      public void mouseClicked( MouseEvent e ) {
+        if( e.getClickCount() == 2 ) {
+          view.setRect( 0, 0, N+1, N+1 );
+          repaint();
+        }
+      }
+    };
+    addMouseListener( drag );
+    addMouseMotionListener( drag );
+  }
+
+  /**
+   * Zooms the view around a point of the window, which stays over
+   * the same part of the maze.
+   * @param x The x pixel to zoom around.
+   * @param y The y pixel to zoom around.
+   * @param factor How much bigger the view gets, below 1 to zoom in.
+   */
+  private void zoom( int x, int y, double factor ) {
+    int w = getWidth(), h = getHeight();
+    if( w <= 0 || h <= 0 ) {
+      return;
+    }
+    double gx = view.x + x * view.width / w;
+    double gy = view.y + (h - y) * view.height / h;
+    double size = Math.max( view.width, view.height );
+    factor = Math.min( Math.max( factor, Math.min( 1, MIN_VIEW/size ) ), (N+1)/size );
+    double vw = view.width * factor, vh = view.height * factor;
+    view.setRect( gx - x * vw / w, gy - (h - y) * vh / h, vw, vh );
+    clampView();
+    repaint();
+  }
+
+  /**
+   * Moves the view with the pointer.
+   * @param dx How far the pointer moved right, in pixels.
+   * @param dy How far the pointer moved down, in pixels.
+   */
+  private void pan( int dx, int dy ) {
+    view.x -= dx * view.width / getWidth();
+    view.y += dy * view.height / getHeight();
+    clampView();
+    repaint();
+  }
+
+  /**
+   * Keeps the view inside the grid.
+   */
+  private void clampView() {
+    view.x = Math.max( 0, Math.min( view.x, N+1 - view.width ) );
+    view.y = Math.max( 0, Math.min( view.y, N+1 - view.height ) );
   }
 
   /**
@@ -100,7 +249,54 @@ public class GridGraphVisualizer extends JApplet {
    * @ para to The vertex where the edge ends.
    */
   public void addEdge( int from, int to ) {
-    edgeList.add( new Pair<Integer, Integer>( from, to) );
+    storeEdge( from, to );
+    edgesChanged();
+  }
+
+  /**
+   * Method to add many edges at once, much faster than adding
+   * them one at a time. Edge k goes from from[k] to to[k].
+   * @param from The vertices where the edges start.
+   * @param to The vertices where the edges end.
+   */
+  public void addEdges( int[] from, int[] to ) {
+    if( from.length != to.length ) {
+      throw new IllegalArgumentException( "Got " + from.length + " starts but " + to.length + " ends" );
+    }
+    for( int k = 0; k < from.length; k++ ) {
+      storeEdge( from[k], to[k] );
+    }
+    edgesChanged();
+  }
+
+  /**
+   * Stores an edge without redrawing anything.
+   * @param from The vertex where the edge starts.
+   * @param to The vertex where the edge ends.
+   */
+  private void storeEdge( int from, int to ) {
+    int a = Math.min( from, to ), b = Math.max( from, to );
+    byte bit = GridGraphStyle.edgeBit( a, b, N );
+    if( bit != 0 ) {
+      edgeBits[a-1] |= bit;
+    } else {
+      if( 2*otherEdgeCount == otherEdges.length ) {
+        otherEdges = Arrays.copyOf( otherEdges, 2*otherEdges.length );
+      }
+      otherEdges[2*otherEdgeCount] = from;
+      otherEdges[2*otherEdgeCount+1] = to;
+      otherEdgeCount++;
+    }
+  }
+
+  /**
+   * Drops everything drawn from the edges, so it is drawn again.
+   */
+  private void edgesChanged() {
+    // the cached layers and densities no longer match the edges
+    edgeLayer = null;
+    density = null;
+    repaint();
   }
 
   /**
@@ -110,62 +306,552 @@ public class GridGraphVisualizer extends JApplet {
    * @ param nodeList List of nodes that make up the path
    */
   public void addPath( List<Integer> nodeList ) {
-    LinkedList<Integer> path = new LinkedList<>();
-    for( Integer i : nodeList ) {
-      path.add( i  );
+    int[] path = new int[nodeList.size()];
+    int i = 0;
+    for( Integer v : nodeList ) {
+      path[i++] = v;
     }
+    storePath( path );
+  }
+
+  /**
+   * Method to add a path to be visualized, given as an array of
+   * nodes such as GridGraph.findPath returns. The array is kept
+   * as it is, so it should not be changed afterwards.
+   * @param path The nodes that make up the path.
+   */
+  public void addPath( int[] path ) {
+    storePath( path );
+  }
+
+  /**
+   * Stores a path and redraws the part of the window it covers.
+   * @param path The nodes that make up the path.
+   */
+  private void storePath( int[] path ) {
+    double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+    double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+    for( int v : path ) {
+      minX = Math.min( minX, gridX(v) );
+      maxX = Math.max( maxX, gridX(v) );
+      minY = Math.min( minY, gridY(v) );
+      maxY = Math.max( maxY, gridY(v) );
+    }
+    Rectangle2D bounds = path.length == 0 ? new Rectangle2D.Double()
+        : new Rectangle2D.Double( minX, minY, maxX - minX, maxY - minY );
     pathList.add( path );
+    pathBounds.add( bounds );
+
+    // only the part of the window the new path covers has to be redrawn
+    if( getWidth() > 0 && getHeight() > 0 && path.length > 0 ) {
+      Rectangle dirty = deviceBounds( bounds, gridTransform() );
+      repaint( dirty.x, dirty.y, dirty.width, dirty.height );
+    }
+  }
+
+  /**
+   * Runs a shortest path query on a worker thread and shows the search
+   * as it expands, relaxed vertices in light orange and settled ones in
+   * darker orange. The search hands its progress over through a bounded
+   * queue and never waits for the drawing, which happens on the event
+   * thread at most about 30 times a second. The path is added once the
+   * search is done. Watching another search replaces this one.
+   * @param graph The graph to search, of the same size as the maze.
+   * @param s The source vertex.
+   * @param t The target vertex.
+   * @param weighted Whether edge weights should be used or not.
+   * @param mode The search algorithm to use.
+   */
+  public void watchSearch( GridGraph graph, int s, int t, boolean weighted, SearchMode mode ) {
+    if( graph.getSize() != N ) {
+      throw new IllegalArgumentException( "The graph is " + graph.getSize() + " wide but the maze is " + N );
+    }
+    FrontierQueue queue = new FrontierQueue( N*N );
+    SwingUtilities.invokeLater( () -> {
+      if( frameTimer != null ) {
+        frameTimer.stop();
+      }
+      frontier = queue;
+      frontierLayer = null;
+      frontierTaken = new int[FrontierQueue.CAPACITY];
+      frameTimer = new Timer( FRAME_MILLIS, e -> showFrontier() );
+      frameTimer.start();
+    } );
+    Thread worker = new Thread( () -> {
+      try {
+        graph.findPath( s, t, weighted, mode, queue );
+      } catch( RuntimeException e ) {
+        // stop the animation, then let the error be reported
+        queue.finished( GridGraph.NO_PATH );
+        throw e;
+      }
+    }, "GridGraphVisualizer search" );
+    worker.setDaemon( true );
+    worker.start();
+  }
+
+  /**
+   * Draws what the watched search did since the last frame, and adds
+   * the path once it is done. Runs on the event thread.
+   */
+  private void showFrontier() {
+    // read the path first, so every vertex reported before it is taken below
+    int[] path = frontier.path();
+    int count = frontier.take( frontierTaken );
+    if( count < 0 ) {
+      // too much changed since the last frame, redraw from the states
+      frontierLayer = null;
+      repaint();
+    } else if( count > 0 ) {
+      if( frontierLayer != null ) {
+        AffineTransform tform = gridTransform();
+        for( int i = 0; i < count; i++ ) {
+          markVertex( frontierTaken[i], tform );
+        }
+      }
+      repaint();
+    }
+    if( path != null ) {
+      frameTimer.stop();
+      if( path.length > 0 ) {
+        addPath( path );
+      }
+    }
+  }
+
+  /**
+   * Draws the state of one vertex of the watched search into the
+   * frontier layer, as the square of grid space closest to it.
+   * @param v The vertex, indexed from zero.
+   * @param tform The transform from grid units to pixels.
+   */
+  private void markVertex( int v, AffineTransform tform ) {
+    int w = frontierLayer.getWidth(), h = frontierLayer.getHeight();
+    double i = v/N + 1, j = v%N + 1;
+    if( i + 0.5 < view.x || i - 0.5 > view.x + view.width
+        || j + 0.5 < view.y || j - 0.5 > view.y + view.height ) {
+      return;
+    }
+    double sx = tform.getScaleX(), sy = tform.getScaleY();
+    double tx = tform.getTranslateX(), ty = tform.getTranslateY();
+    int x0 = (int)Math.round( (i - 0.5)*sx + tx );
+    int x1 = Math.max( x0 + 1, (int)Math.round( (i + 0.5)*sx + tx ) );
+    int y0 = (int)Math.round( (j + 0.5)*sy + ty );
+    int y1 = Math.max( y0 + 1, (int)Math.round( (j - 0.5)*sy + ty ) );
+    int color = frontierColor( frontier.state( v ) );
+    int[] pixels = ((DataBufferInt) frontierLayer.getRaster().getDataBuffer()).getData();
+    for( int y = Math.max( 0, y0 ); y < Math.min( h, y1 ); y++ ) {
+      Arrays.fill( pixels, y*w + Math.max( 0, x0 ), y*w + Math.max( Math.max( 0, x0 ), Math.min( w, x1 ) ), color );
+    }
+  }
+
+  /**
+   * Returns the pixel color of a vertex state of the watched search.
+   * @param state The state, see FrontierQueue.
+   * @return The color with its alpha, 0 for an unreached vertex.
+   */
+  private static int frontierColor( byte state ) {
+    return state == FrontierQueue.SETTLED ? SETTLED_COLOR.getRGB()
+        : state == FrontierQueue.RELAXED ? RELAXED_COLOR.getRGB() : 0;
+  }
+
+  /**
+   * Draws the whole frontier layer from the vertex states, one pixel at
+   * a time, each pixel taking the state of the vertex closest to it.
+   */
+  private void renderFrontier() {
+    int w = getWidth(), h = getHeight();
+    frontierLayer = new BufferedImage( w, h, BufferedImage.TYPE_INT_ARGB );
+    int[] pixels = ((DataBufferInt) frontierLayer.getRaster().getDataBuffer()).getData();
+    int[] row = new int[w];
+    closest( view.x, view.width / w, false, row );
+    int[] col = new int[h];
+    closest( view.y, view.height / h, true, col );
+    for( int y = 0; y < h; y++ ) {
+      int c = col[y];
+      if( c < 0 ) {
+        continue;
+      }
+      for( int x = 0; x < w; x++ ) {
+        if( row[x] >= 0 ) {
+          pixels[y*w + x] = frontierColor( frontier.state( row[x]*N + c ) );
+        }
+      }
+    }
+    frontierView = (Rectangle2D.Double) view.clone();
+  }
+
+  /**
+   * Returns the horizontal grid coordinate of a vertex. The row of the
+   * vertex runs along the horizontal axis, like it always has.
+   * @param v The vertex (one based index).
+   * @return The x coordinate of the vertex in grid units.
+   */
+  private double gridX( int v ) {
+    return 1 + (v-1)/N - 0.5 * LINE_THICKNESS;
+  }
+
+  /**
+   * Returns the vertical grid coordinate of a vertex.
+   * @param v The vertex (one based index).
+   * @return The y coordinate of the vertex in grid units.
+   */
+  private double gridY( int v ) {
+    return 1 + (v-1)%N - 0.5 * LINE_THICKNESS;
+  }
+
+  /**
+   * Returns the transform from grid units to window pixels. The view
+   * fills the window, and y grows upwards. When the whole grid is in
+   * view it has a margin of one unit.
+   * @return The transform for the current window size and view.
+   */
+  private AffineTransform gridTransform() {
+    AffineTransform tform = AffineTransform.getTranslateInstance( 0, getHeight());
+    tform.scale( getWidth()/view.width, -getHeight()/view.height );
+    tform.translate( -view.x, -view.y );
+    return tform;
+  }
+
+  /**
+   * Returns the pixels a shape drawn within some grid space bounds can
+   * touch, widened by the path stroke and antialiasing.
+   * @param bounds The bounds in grid units.
+   * @param tform The transform from grid units to pixels.
+   * @return The pixel rectangle.
+   */
+  private Rectangle deviceBounds( Rectangle2D bounds, AffineTransform tform ) {
+    Rectangle r = tform.createTransformedShape( bounds ).getBounds();
+    int pad = (int)Math.ceil( 2.0f*LINE_THICKNESS * Math.max( Math.abs(tform.getScaleX()), Math.abs(tform.getScaleY()) ) ) + 2;
+    r.grow( pad, pad );
+    return r;
+  }
+
+  /**
+   * Draws the edges into the cached edge layer and the vertex points into
+   * the cached vertex layer, for the current window size and view. How
+   * depends on how many pixels a grid unit takes, see drawShapes,
+   * drawPixels and drawDensity.
+   */
+  private void renderLayers() {
+    int w = getWidth(), h = getHeight();
+    AffineTransform tform = gridTransform();
+    double scale = Math.min( w/view.width, h/view.height );
+
+    edgeLayer = new BufferedImage( w, h, BufferedImage.TYPE_INT_RGB );
+    vertexLayer = null;
+    if( scale >= SHAPE_SCALE ) {
+      drawShapes( tform );
+    } else if( scale >= PIXEL_SCALE ) {
+      drawPixels();
+    } else {
+      drawDensity();
+    }
+
+    // edges that do not join neighbours are few, they are always drawn as lines
+    if( otherEdgeCount > 0 ) {
+      Graphics2D g2 = edgeLayer.createGraphics();
+      g2.transform( tform );
+      g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g2.setColor( EDGE_COLOR );
+      g2.setStroke(new BasicStroke(LINE_THICKNESS));
+      Line2D.Double line = new Line2D.Double();
+      for( int k = 0; k < otherEdgeCount; k++ ) {
+        int from = otherEdges[2*k], to = otherEdges[2*k+1];
+        line.setLine( gridX(from), gridY(from), gridX(to), gridY(to) );
+        g2.draw( line );
+      }
+      g2.dispose();
+    }
+    layerView = (Rectangle2D.Double) view.clone();
+  }
+
+  /**
+   * Draws the edges and vertex points in view as shapes, vertex points
+   * in their own transparent layer.
+   * @param tform The transform from grid units to pixels.
+   */
+  private void drawShapes( AffineTransform tform ) {
+    int w = getWidth(), h = getHeight();
+    // vertices one unit outside the view can still have edges into it
+    int firstRow = Math.max( 1, (int)Math.floor( view.x ) - 1 );
+    int lastRow = Math.min( N, (int)Math.ceil( view.x + view.width ) + 1 );
+    int firstCol = Math.max( 1, (int)Math.floor( view.y ) - 1 );
+    int lastCol = Math.min( N, (int)Math.ceil( view.y + view.height ) + 1 );
+
+    Graphics2D g2 = edgeLayer.createGraphics();
+    g2.setColor( bg );
+    g2.fillRect( 0, 0, w, h );
+    g2.transform( tform );
+    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g2.setColor( EDGE_COLOR );
+    g2.setStroke(new BasicStroke(LINE_THICKNESS));
+    // a single line object is reused for every edge
+    Line2D.Double line = new Line2D.Double();
+    for( int i = firstRow; i <= lastRow; i++ ) {
+      for( int j = firstCol; j <= lastCol; j++ ) {
+        int v = (i-1)*N + j;
+        if( (edgeBits[v-1] & EDGE_UP) != 0 ) {
+          line.setLine( gridX(v), gridY(v), gridX(v+1), gridY(v+1) );
+          g2.draw( line );
+        }
+        if( (edgeBits[v-1] & EDGE_RIGHT) != 0 ) {
+          line.setLine( gridX(v), gridY(v), gridX(v+N), gridY(v+N) );
+          g2.draw( line );
+        }
+      }
+    }
+    g2.dispose();
+
+    vertexLayer = new BufferedImage( w, h, BufferedImage.TYPE_INT_ARGB );
+    g2 = vertexLayer.createGraphics();
+    g2.transform( tform );
+    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g2.setColor( VERTEX_COLOR );
+    float offset = (float)Math.sqrt(2.0) * RADIUS;
+    Ellipse2D.Float dot = new Ellipse2D.Float();
+    for( int i = firstRow; i <= lastRow; i++ ) {
+      for( int j = firstCol; j <= lastCol; j++) {
+        dot.setFrame( i - offset, j - offset, 2*RADIUS, 2*RADIUS );
+        g2.fill( dot );
+      }
+    }
+    g2.dispose();
+  }
+
+  /**
+   * Draws the maze one pixel at a time, for when vertices are only a
+   * few pixels apart. Each pixel is a vertex point if it is the closest
+   * pixel to a vertex, part of an edge if it is the closest to the line
+   * between two neighbours that have one, and background otherwise.
+   */
+  private void drawPixels() {
+    int w = getWidth(), h = getHeight();
+    int[] pixels = ((DataBufferInt) edgeLayer.getRaster().getDataBuffer()).getData();
+    int background = GridGraphStyle.BACKGROUND;
+    int edge = GridGraphStyle.EDGE_COLOR;
+    int vertex = GridGraphStyle.VERTEX_COLOR;
+
+    // closest row for each pixel column, and which side of it the pixel is on
+    int[] row = new int[w];
+    int[] rowSide = new int[w];
+    closest( view.x, view.width / w, false, row, rowSide );
+    int[] col = new int[h];
+    int[] colSide = new int[h];
+    closest( view.y, view.height / h, true, col, colSide );
+
+    for( int y = 0; y < h; y++ ) {
+      int c = col[y], cs = colSide[y];
+      for( int x = 0; x < w; x++ ) {
+        int r = row[x], rs = rowSide[x];
+        int color = background;
+        if( r >= 0 && c >= 0 ) {
+          if( rs == 0 && cs == 0 ) {
+            color = vertex;
+          } else if( rs == 0 ) {
+            int below = cs > 0 ? c : c - 1;
+            if( below >= 0 && (edgeBits[r*N + below] & EDGE_UP) != 0 ) {
+              color = edge;
+            }
+          } else if( cs == 0 ) {
+            int left = rs > 0 ? r : r - 1;
+            if( left >= 0 && (edgeBits[left*N + c] & EDGE_RIGHT) != 0 ) {
+              color = edge;
+            }
+          }
+        }
+        pixels[y*w + x] = color;
+      }
+    }
+  }
+
+  /**
+   * Finds the closest row or column of vertices to each pixel along one
+   * axis of the window, for the layers that only need to know which
+   * vertex a pixel belongs to.
+   * @param start Where the view starts along the axis, in grid units.
+   * @param step Grid units per pixel.
+   * @param flip Whether the axis runs upwards, so the first pixel is at the end of the view.
+   * @param index Receives the row or column from zero, or -1 for pixels outside the grid.
+   */
+  private void closest( double start, double step, boolean flip, int[] index ) {
+    closest( start, step, flip, index, null );
+  }
+
+  /**
+   * Finds the closest row or column of vertices to each pixel along one
+   * axis of the window, for drawPixels.
+   * @param start Where the view starts along the axis, in grid units.
+   * @param step Grid units per pixel.
+   * @param flip Whether the axis runs upwards, so the first pixel is at the end of the view.
+   * @param index Receives the row or column from zero, or -1 for pixels outside the grid.
+   * @param side Receives 0 for the closest pixel to that row or column, and otherwise which side of it the pixel is on.
+   *             May be null when only the index is needed.
+   */
+  private void closest( double start, double step, boolean flip, int[] index, int[] side ) {
+    int n = index.length;
+    for( int p = 0; p < n; p++ ) {
+      double g = start + ((flip ? n - 1 - p : p) + 0.5) * step;
+      long nearest = Math.round( g );
+      double d = g - nearest;
+      index[p] = nearest >= 1 && nearest <= N ? (int)nearest - 1 : -1;
+      if( side != null ) {
+        side[p] = Math.abs( d ) <= 0.5 * step ? 0 : d > 0 ? 1 : -1;
+      }
+    }
+  }
+
+  /**
+   * Shades each pixel by how many edges there are in its part of the
+   * maze, for when several vertices fall on one pixel. The densities
+   * come from the level of the pyramid whose blocks are no bigger than
+   * a pixel, so the time taken does not depend on the size of the maze.
+   */
+  private void drawDensity() {
+    int w = getWidth(), h = getHeight();
+    if( density == null ) {
+      buildDensity();
+    }
+    int[] pixels = ((DataBufferInt) edgeLayer.getRaster().getDataBuffer()).getData();
+    int background = GridGraphStyle.BACKGROUND;
+
+    // no edges shades to the background and all of them to the vertex color
+    int[] shade = new int[256];
+    Color full = VERTEX_COLOR;
+    for( int d = 0; d < 256; d++ ) {
+      int r = bg.getRed() + (full.getRed() - bg.getRed()) * d / 255;
+      int g = bg.getGreen() + (full.getGreen() - bg.getGreen()) * d / 255;
+      int b = bg.getBlue() + (full.getBlue() - bg.getBlue()) * d / 255;
+      shade[d] = r << 16 | g << 8 | b;
+    }
+
+    double units = Math.min( view.width / w, view.height / h );
+    int level = Math.max( 0, Math.min( density.length - 1, (int)Math.floor( Math.log( units ) / Math.log( 2 ) ) ) );
+    byte[] blocks = density[level];
+    int side = ((N-1) >> level) + 1;
+
+    int[] row = new int[w];
+    closest( view.x, view.width / w, false, row );
+    int[] col = new int[h];
+    closest( view.y, view.height / h, true, col );
+    for( int x = 0; x < w; x++ ) {
+      row[x] = row[x] < 0 ? -1 : (row[x] >> level) * side;
+    }
+
+    for( int y = 0; y < h; y++ ) {
+      int c = col[y] < 0 ? -1 : col[y] >> level;
+      for( int x = 0; x < w; x++ ) {
+        int r = row[x];
+        pixels[y*w + x] = r < 0 || c < 0 ? background : shade[blocks[r + c] & 0xFF];
+      }
+    }
+  }
+
+  /**
+   * Builds the edge density pyramid, each level from the one below.
+   */
+  private void buildDensity() {
+    int levels = 1;
+    for( int side = N; side > 1; side = (side+1)/2 ) {
+      levels++;
+    }
+    byte[][] pyramid = new byte[levels][];
+    pyramid[0] = new byte[N*N];
+    for( int v = 0; v < N*N; v++ ) {
+      int edges = (edgeBits[v] & EDGE_UP) + ((edgeBits[v] & EDGE_RIGHT) >> 1);
+      pyramid[0][v] = (byte)(edges * 255 / 2);
+    }
+    int side = N;
+    for( int k = 1; k < levels; k++ ) {
+      int next = (side+1)/2;
+      byte[] below = pyramid[k-1];
+      byte[] blocks = new byte[next*next];
+      for( int r = 0; r < next; r++ ) {
+        for( int c = 0; c < next; c++ ) {
+          // parts of a block past the edge of the grid count as empty
+          int sum = 0;
+          for( int i = 2*r; i < Math.min( 2*r + 2, side ); i++ ) {
+            for( int j = 2*c; j < Math.min( 2*c + 2, side ); j++ ) {
+              sum += below[i*side + j] & 0xFF;
+            }
+          }
+          blocks[r*next + c] = (byte)((sum + 2) / 4);
+        }
+      }
+      pyramid[k] = blocks;
+      side = next;
+    }
+    density = pyramid;
   }
 
 
   /**
    * The paint method for this applet. Do not call this method,
    * it is called automatically whenever the applet needs to
-   * draw its content.
+   * draw its content. The edges and vertex points are copied from
+   * cached images, and only the paths that cross the area being
+   * repainted are drawn.
    */
   public void paint(Graphics g) {
     super.paint(g);
-    g.setColor(Color.WHITE);
-    g.fillRect(0, 0, getWidth(), getHeight());
+    int w = getWidth(), h = getHeight();
+    if( w <= 0 || h <= 0 ) {
+      return;
+    }
+    if( edgeLayer == null || edgeLayer.getWidth() != w || edgeLayer.getHeight() != h
+        || !view.equals( layerView ) ) {
+      renderLayers();
+    }
     Graphics2D g2 = (Graphics2D) g;
-    AffineTransform tform = AffineTransform.getTranslateInstance( 0, getHeight());
-    tform.scale( getWidth()/(N+1), -getHeight()/(N+1) );
-    g2.setTransform( tform);
+    Rectangle clip = g2.getClipBounds();
+    if( clip == null ) {
+      clip = new Rectangle( 0, 0, w, h );
+    }
+    g2.drawImage( edgeLayer, 0, 0, null );
 
-    float radius = 0.125f;
-    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    // Draw the watched search if any
+    if( frontier != null ) {
+      if( frontierLayer == null || frontierLayer.getWidth() != w || frontierLayer.getHeight() != h
+          || !view.equals( frontierView ) ) {
+        renderFrontier();
+      }
+      g2.drawImage( frontierLayer, 0, 0, null );
+    }
 
-    // Draw the edges
-    g2.setColor( Color.LIGHT_GRAY );
-    float LINE_THICKNESS = 0.05f;
-    float lo = -0.5f * LINE_THICKNESS;
-    g2.setStroke(new BasicStroke(LINE_THICKNESS));
-    for( Pair<Integer,Integer> edge : edgeList ) {
-      g2.draw( new Line2D.Double(lo+1+(edge.x-1)/N,lo+1+(edge.x-1)%N, lo+1+(edge.y-1)/N, lo+1+(edge.y-1)%N ));
-    }
-
-    // Draw paths if any
-    g2.setStroke(new BasicStroke(2.0f*LINE_THICKNESS));
-    if( pathList != null ) {
-      int r = cOffset;
-      for( List<Integer> path : pathList ) {
-        g2.setColor( new Color(qColors[r],qColors[r+1],qColors[r+2],225) );
-        for( int i = 0; i < path.size() - 1; i++ ) {
-          g2.draw( new Line2D.Double(lo+1+(path.get(i)-1)/N,lo+1+(path.get(i)-1)%N, lo+1+(path.get(i+1)-1)/N, lo+1+(path.get(i+1)-1)%N ));
+    // Draw paths if any. Points are mapped to pixels here rather than
+    // through the graphics transform, so runs of points that land on
+    // the same pixel when zoomed out can be skipped.
+    AffineTransform tform = gridTransform();
+    double scale = Math.min( tform.getScaleX(), -tform.getScaleY() );
+    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g2.setStroke(new BasicStroke( (float)Math.max( 1, 2.0*LINE_THICKNESS*scale ) ));
+    Point2D.Double point = new Point2D.Double();
+    int r = cOffset;
+    int p = 0;
+    for( int[] path : pathList ) {
+      if( deviceBounds( pathBounds.get(p++), tform ).intersects( clip ) ) {
+        g2.setColor( new Color( GridGraphStyle.PATH_ALPHA << 24 | GridGraphStyle.PATH_COLORS[r], true ) );
+        Path2D.Float line = new Path2D.Float();
+        long last = Long.MIN_VALUE;
+        for( int i = 0; i < path.length; i++ ) {
+          point.setLocation( gridX(path[i]), gridY(path[i]) );
+          tform.transform( point, point );
+          long pixel = (long)Math.floor( point.x ) << 32 | ((long)Math.floor( point.y ) & 0xFFFFFFFFL);
+          if( i == 0 ) {
+            line.moveTo( point.x, point.y );
+          } else if( pixel != last || i == path.length - 1 ) {
+            line.lineTo( point.x, point.y );
+          }
+          last = pixel;
         }
-        r = (r + 3) % qColors.length;
+        g2.draw( line );
       }
+      r = (r + 1) % GridGraphStyle.PATH_COLORS.length;
     }
 
-
-    // Draw a grid of points representing the vertices.
-    g2.setColor( Color.DARK_GRAY );
-    float offset = (float)Math.sqrt(2.0) * radius;
-    for( int i = 1; i <= N; i++ ) {
-      for( int j = 1; j <= N; j++) {
-        g2.fill( new Ellipse2D.Float(
-            i - offset, j - offset, 2*radius, 2*radius) );
-      }
+    // Draw the grid of points representing the vertices on top
+    if( vertexLayer != null ) {
+      g2.drawImage( vertexLayer, 0, 0, null );
     }
   }
 
@@ -0,0 +1,258 @@
+package hw4.student;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap of vertices keyed by an integer distance. The heap is built entirely on primitive arrays:
+ * one array holds the heap itself, one holds the position of every vertex inside the heap and one holds the keys.
+ * Knowing the position of each vertex is what makes decrease-key possible in O(log V). A 4-ary layout keeps the
+ * heap shallow and the children of a slot next to each other in memory.
+ */
+
+final class IndexedMinHeap implements MinQueue {
+
+  /**
+   * Number of children of every slot in the heap
+   */
+  private static final int ARITY = 4;
+
+  /**
+   * The heap, each slot holds a vertex
+   */
+  private final int[] heap;
+
+  /**
+   * Position of every vertex in the heap, or -1 if the vertex is not in the heap
+   */
+  private final int[] pos;
+
+  /**
+   * Key of every vertex, only meaningful while the vertex is in the heap
+   */
+  private final int[] keys;
+
+  /**
+   * Number of vertices currently in the heap
+   */
+  private int count;
+
+  /**
+   * Number of inserts, key changes and polls made while counting, only read by the search metrics
+   */
+  long operations;
+
+  /**
+   * Whether operations are counted, only while the search metrics measure a query
+   */
+  boolean counting;
+
+  /**
+   * Creates an empty heap that can hold the vertices 0 to capacity - 1
+   *
+   * @param capacity - The number of vertices the heap must be able to hold
+   */
+  IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    pos = new int[capacity];
+    keys = new int[capacity];
+    Arrays.fill(pos, -1);
+  }
+
+  /**
+   * Checks if the heap is empty
+   *
+   * @return - True if there are no vertices left in the heap
+   */
+  @Override
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * Returns the number of vertices in the heap
+   *
+   * @return - The number of vertices in the heap
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Checks if a vertex is in the heap
+   *
+   * @param v - The vertex to look for
+   * @return - True if the vertex is in the heap
+   */
+  boolean contains(int v) {
+    return pos[v] >= 0;
+  }
+
+  /**
+   * Returns the key of a vertex that is in the heap
+   *
+   * @param v - The vertex whose key is wanted
+   * @return - The key of the vertex
+   */
+  int key(int v) {
+    return keys[v];
+  }
+
+  /**
+   * Returns the smallest key in the heap without removing it. The heap must not be empty.
+   *
+   * @return - The smallest key in the heap
+   */
+  int minKey() {
+    return keys[heap[0]];
+  }
+
+  /**
+   * Adds a vertex that is not in the heap yet
+   *
+   * @param v - The vertex to add
+   * @param key - The key of the vertex
+   */
+  void insert(int v, int key) {
+    if (counting) {
+      operations++;
+    }
+    keys[v] = key;
+    siftUp(count++, v);
+  }
+
+  /**
+   * Lowers the key of a vertex that is already in the heap
+   *
+   * @param v - The vertex whose key changes
+   * @param key - The new key, which must not be larger than the old one
+   */
+  void decreaseKey(int v, int key) {
+    if (counting) {
+      operations++;
+    }
+    keys[v] = key;
+    siftUp(pos[v], v);
+  }
+
+  /**
+   * Adds a vertex to the heap, or lowers its key if it is already there
+   *
+   * @param v - The vertex to add or update
+   * @param key - The new key of the vertex
+   */
+  @Override
+  public void push(int v, int key) {
+    if (pos[v] >= 0) {
+      decreaseKey(v, key);
+    } else {
+      insert(v, key);
+    }
+  }
+
+  /**
+   * Changes the key of a vertex that is already in the heap, in either direction
+   *
+   * @param v - The vertex whose key changes
+   * @param key - The new key
+   */
+  void changeKey(int v, int key) {
+    if (counting) {
+      operations++;
+    }
+    int old = keys[v];
+    keys[v] = key;
+    if (key < old) {
+      siftUp(pos[v], v);
+    } else {
+      siftDown(pos[v], v);
+    }
+  }
+
+  /**
+   * Removes the vertex with the smallest key. The heap must not be empty.
+   *
+   * @return - The vertex that had the smallest key
+   */
+  @Override
+  public int poll() {
+    if (counting) {
+      operations++;
+    }
+    int min = heap[0];
+    pos[min] = -1;
+    count--;
+    if (count > 0) {
+      siftDown(0, heap[count]);
+    }
+    return min;
+  }
+
+  /**
+   * Removes every vertex from the heap. Only the vertices still in the heap are touched, so this is cheap after a
+   * search that emptied most of the heap.
+   */
+  @Override
+  public void clear() {
+    for (int i = 0; i < count; i++) {
+      pos[heap[i]] = -1;
+    }
+    count = 0;
+  }
+
+  /**
+   * Moves a vertex up from a slot until its parent has a smaller or equal key
+   *
+   * @param slot - The slot to start at
+   * @param v - The vertex being placed
+   */
+  private void siftUp(int slot, int v) {
+    int key = keys[v];
+    while (slot > 0) {
+      int parentSlot = (slot - 1) / ARITY;
+      int parent = heap[parentSlot];
+      if (keys[parent] <= key) {
+        break;
+      }
+      heap[slot] = parent;
+      pos[parent] = slot;
+      slot = parentSlot;
+    }
+    heap[slot] = v;
+    pos[v] = slot;
+  }
+
+  /**
+   * Moves a vertex down from a slot until all of its children have larger or equal keys
+   *
+   * @param slot - The slot to start at
+   * @param v - The vertex being placed
+   */
+  private void siftDown(int slot, int v) {
+    int key = keys[v];
+    while (true) {
+      int first = slot * ARITY + 1;
+      if (first >= count) {
+        break;
+      }
+      int last = Math.min(first + ARITY, count);
+      int best = first;
+      int bestKey = keys[heap[first]];
+      for (int c = first + 1; c < last; c++) {
+        int childKey = keys[heap[c]];
+        if (childKey < bestKey) {
+          best = c;
+          bestKey = childKey;
+        }
+      }
+      if (bestKey >= key) {
+        break;
+      }
+      int child = heap[best];
+      heap[slot] = child;
+      pos[child] = slot;
+      slot = best;
+    }
+    heap[slot] = v;
+    pos[v] = slot;
+  }
+}
@@ -0,0 +1,104 @@
+package hw4.student;
+
+/**
+ * First in first out queue of ints stored in a circular array. The capacity is rounded up to a power of two so the
+ * head and tail can wrap around with a mask instead of a division. Nothing is allocated after construction, which
+ * makes the queue cheap to reuse across searches.
+ */
+
+final class IntRingQueue {
+
+  /**
+   * Circular buffer holding the queued values
+   */
+  private final int[] buffer;
+
+  /**
+   * Mask used to wrap indices around the buffer
+   */
+  private final int mask;
+
+  /**
+   * Number of values taken out of the queue so far
+   */
+  private int head;
+
+  /**
+   * Number of values put into the queue so far
+   */
+  private int tail;
+
+  /**
+   * Number of adds and polls made while counting, only read by the search metrics
+   */
+  long operations;
+
+  /**
+   * Whether operations are counted, only while the search metrics measure a query
+   */
+  boolean counting;
+
+  /**
+   * Creates an empty queue that can hold at least capacity values at once
+   *
+   * @param capacity - The largest number of values that will be in the queue at the same time
+   */
+  IntRingQueue(int capacity) {
+    int length = Integer.highestOneBit(Math.max(capacity, 1));
+    if (length < capacity) {
+      length <<= 1;
+    }
+    buffer = new int[length];
+    mask = length - 1;
+  }
+
+  /**
+   * Checks if the queue is empty
+   *
+   * @return - True if there are no values in the queue
+   */
+  boolean isEmpty() {
+    return head == tail;
+  }
+
+  /**
+   * Returns the number of values in the queue
+   *
+   * @return - The number of values in the queue
+   */
+  int size() {
+    return tail - head;
+  }
+
+  /**
+   * Adds a value to the back of the queue. The caller must make sure the capacity is never exceeded.
+   *
+   * @param value - The value to add
+   */
+  void add(int value) {
+    if (counting) {
+      operations++;
+    }
+    buffer[tail++ & mask] = value;
+  }
+
+  /**
+   * Removes the value at the front of the queue. The queue must not be empty.
+   *
+   * @return - The value that was at the front
+   */
+  int poll() {
+    if (counting) {
+      operations++;
+    }
+    return buffer[head++ & mask];
+  }
+
+  /**
+   * Removes every value from the queue
+   */
+  void clear() {
+    head = 0;
+    tail = 0;
+  }
+}
@@ -0,0 +1,276 @@
+package hw4.student;
+
+/**
+ * Jump point search for grids where every step costs the same, adapted to four neighbours and to edges that may be
+ * missing in either direction. On an open grid there are many shortest paths between two vertices that only differ
+ * in the order of their vertical and horizontal steps, and a breadth-first search reaches every vertex along all of
+ * them. This search only follows one canonical path out of each such set: vertical steps are taken before
+ * horizontal ones, so a path may only turn from horizontal to vertical where taking the vertical step one vertex
+ * earlier is not possible. Such a vertex is a forced turn.
+ *
+ * Instead of pushing every vertex, the search jumps. A horizontal jump runs along the row until it hits the target,
+ * a forced turn or the end of the row. A vertical jump takes one step at a time and runs a horizontal jump both ways
+ * from each vertex it passes, stopping as soon as one of them finds something. Only the vertices a jump stops at,
+ * the jump points, enter the priority queue, ordered by their distance plus the Manhattan distance to the target.
+ * Jump points go on in every direction but back where they came from, so the search does not depend on how a jump
+ * point was reached and keeping one distance per vertex is enough.
+ *
+ * Apart from the check for the target, where a horizontal jump stops only depends on the graph, so it is worked out
+ * once per graph for every vertex and both directions, as in JPS+. A horizontal jump is then a table lookup plus a
+ * check for the target, and a vertical jump costs one step per row instead of a scan of every row it passes.
+ */
+
+final class JumpPointSearch {
+
+  /**
+   * Returned by a jump that ran into a dead end
+   */
+  private static final int NONE = -1;
+
+  /**
+   * The graph being searched
+   */
+  private final GridAdjacency adjacency;
+
+  /**
+   * Edge weights of the graph, 0 where there is no edge
+   */
+  private final int[] weights;
+
+  /**
+   * Index offsets for each direction
+   */
+  private final int[] offsets;
+
+  /**
+   * Horizontal runs of every vertex, see buildRuns
+   */
+  private final int[] runs;
+
+  /**
+   * Target vertex (zero based index)
+   */
+  private final int target;
+
+  /**
+   * Creates the state for one search
+   *
+   * @param adjacency - The graph to search
+   * @param runs - Horizontal runs of every vertex, made by buildRuns
+   * @param target - Target vertex (zero based index)
+   */
+  private JumpPointSearch(GridAdjacency adjacency, int[] runs, int target) {
+    this.adjacency = adjacency;
+    this.weights = adjacency.weights;
+    this.offsets = adjacency.offsets;
+    this.runs = runs;
+    this.target = target;
+  }
+
+  /**
+   * Works out where a horizontal jump from each vertex stops. runs[2 * v + dir] for dir RIGHT or LEFT is 0 if v has
+   * no edge that way, the number of steps to the first forced turn if the jump reaches one, and minus the number of
+   * steps to the end of the row or the first missing edge otherwise. Each row is walked once per direction from its
+   * far end, so every run is one step more than the run of the next vertex.
+   *
+   * @param adjacency - The graph
+   * @return - The runs, two ints per vertex
+   */
+  static int[] buildRuns(GridAdjacency adjacency) {
+    int size = adjacency.size;
+    int[] runs = new int[2 * adjacency.vertices];
+    JumpPointSearch rules = new JumpPointSearch(adjacency, runs, -1);
+    for (int row = 0; row < size; row++) {
+      int first = row * size;
+      for (int v = first + size - 1; v >= first; v--) {
+        runs[2 * v + GridAdjacency.RIGHT] = rules.run(v, GridAdjacency.RIGHT);
+      }
+      for (int v = first; v < first + size; v++) {
+        runs[2 * v + GridAdjacency.LEFT] = rules.run(v, GridAdjacency.LEFT);
+      }
+    }
+    return runs;
+  }
+
+  /**
+   * Works out the run of a vertex in one direction from the run of its neighbour that way
+   *
+   * @param v - The vertex (zero based index)
+   * @param dir - RIGHT or LEFT
+   * @return - The run, as described at buildRuns
+   */
+  private int run(int v, int dir) {
+    if (weights[v * GridAdjacency.DIRECTIONS + dir] == 0) {
+      return 0;
+    }
+    int w = v + offsets[dir];
+    if (forced(v, w, dir, GridAdjacency.DOWN) || forced(v, w, dir, GridAdjacency.UP)) {
+      return 1;
+    }
+    int next = runs[2 * w + dir];
+    return next > 0 ? next + 1 : next - 1;
+  }
+
+  /**
+   * Finds a shortest path from a source vertex to a target vertex and records a predecessor for every vertex on it,
+   * so the path can be traced back from the target like after any other search. Distances are counted in steps.
+   *
+   * @param adjacency - The graph to search
+   * @param runs - Horizontal runs of every vertex, made by buildRuns
+   * @param source - Source vertex (zero based index)
+   * @param target - Target vertex (zero based index)
+   * @param scratch - Freshly reset scratch that receives the predecessors
+   */
+  static void run(GridAdjacency adjacency, int[] runs, int source, int target, SearchScratch scratch) {
+    new JumpPointSearch(adjacency, runs, target).search(source, scratch);
+  }
+
+  /**
+   * Runs A* over the jump points, then fills in the vertices between the jump points of the path found
+   *
+   * @param source - Source vertex (zero based index)
+   * @param scratch - Freshly reset scratch that receives the predecessors
+   */
+  private void search(int source, SearchScratch scratch) {
+    int size = adjacency.size;
+    int targetRow = target / size;
+    int targetCol = target % size;
+    IndexedMinHeap heap = scratch.heap;
+    scratch.reach(source, 0, 0);
+    heap.insert(source, 0);
+    while (!heap.isEmpty()) {
+      int u = heap.poll();
+      scratch.settle(u);
+      if (u == target) {
+        fillPath(source, scratch);
+        return;
+      }
+      int uDistance = scratch.distance(u);
+      int back = backDirection(u, scratch.predecessor(u) - 1);
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        if (dir == back) {
+          continue;
+        }
+        int j = dir <= GridAdjacency.LEFT ? jumpHorizontal(u, dir) : jumpVertical(u, dir);
+        if (j == NONE || scratch.isSettled(j)) {
+          continue;
+        }
+        int candidate = uDistance + steps(u, j);
+        if (scratch.distance(j) > candidate) {
+          scratch.reach(j, candidate, u + 1);
+          heap.push(j, candidate + Math.abs(j / size - targetRow) + Math.abs(j % size - targetCol));
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the direction that leads from a jump point back towards the jump point it was reached from. No shortest
+   * path goes that way, since every vertex in between is closer to the source through the earlier jump point.
+   *
+   * @param u - The jump point (zero based index)
+   * @param parent - The jump point it was reached from (zero based index), or -1 for the source
+   * @return - The direction back, or -1 for the source
+   */
+  private int backDirection(int u, int parent) {
+    if (parent < 0) {
+      return -1;
+    }
+    int size = adjacency.size;
+    if (parent / size == u / size) {
+      return parent < u ? GridAdjacency.LEFT : GridAdjacency.RIGHT;
+    }
+    return parent < u ? GridAdjacency.UP : GridAdjacency.DOWN;
+  }
+
+  /**
+   * Returns the number of steps between two vertices on the same row or column
+   *
+   * @param u - The first vertex (zero based index)
+   * @param v - The second vertex (zero based index)
+   * @return - The number of steps between them
+   */
+  private int steps(int u, int v) {
+    int size = adjacency.size;
+    return u / size == v / size ? Math.abs(v - u) : Math.abs(v - u) / size;
+  }
+
+  /**
+   * Jumps along a row until the target, a forced turn or a dead end, looking the end of the jump up in the runs.
+   * The vertices between u and that end all lie on the row of u, so the target is on the way exactly when its index
+   * falls between them.
+   *
+   * @param u - The vertex to jump from (zero based index)
+   * @param dir - RIGHT or LEFT
+   * @return - The vertex the jump stopped at, or NONE if it ran into a dead end
+   */
+  private int jumpHorizontal(int u, int dir) {
+    int run = runs[2 * u + dir];
+    if (run == 0) {
+      return NONE;
+    }
+    int end = u + offsets[dir] * Math.abs(run);
+    if (dir == GridAdjacency.RIGHT ? u < target && target <= end : end <= target && target < u) {
+      return target;
+    }
+    return run > 0 ? end : NONE;
+  }
+
+  /**
+   * Checks whether a horizontal step from prev to v has to be followed by a vertical step at v, because the same
+   * two steps in the other order, from prev in the vertical direction and then along the row, are not possible
+   *
+   * @param prev - The vertex the step started at (zero based index)
+   * @param v - The vertex the step ended at (zero based index)
+   * @param dir - Direction of the step, RIGHT or LEFT
+   * @param turn - Direction of the vertical step, DOWN or UP
+   * @return - True if v is a forced turn towards that direction
+   */
+  private boolean forced(int prev, int v, int dir, int turn) {
+    if (weights[v * GridAdjacency.DIRECTIONS + turn] == 0) {
+      return false;
+    }
+    return weights[prev * GridAdjacency.DIRECTIONS + turn] == 0
+        || weights[(prev + offsets[turn]) * GridAdjacency.DIRECTIONS + dir] == 0;
+  }
+
+  /**
+   * Jumps along a column one step at a time, running horizontal jumps both ways from every vertex passed. The jump
+   * stops at the first vertex whose horizontal jumps find something, since a path may turn there.
+   *
+   * @param u - The vertex to jump from (zero based index)
+   * @param dir - DOWN or UP
+   * @return - The vertex the jump stopped at, or NONE if it ran into a dead end
+   */
+  private int jumpVertical(int u, int dir) {
+    int offset = offsets[dir];
+    int v = u;
+    while (weights[v * GridAdjacency.DIRECTIONS + dir] != 0) {
+      v += offset;
+      if (v == target || jumpHorizontal(v, GridAdjacency.RIGHT) != NONE
+          || jumpHorizontal(v, GridAdjacency.LEFT) != NONE) {
+        return v;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Records the predecessor of every vertex between the jump points of the path found, walking back from the
+   * target
+   *
+   * @param source - Source vertex (zero based index)
+   * @param scratch - The scratch holding the predecessors of the jump points
+   */
+  private void fillPath(int source, SearchScratch scratch) {
+    int v = target;
+    while (v != source) {
+      int parent = scratch.predecessor(v) - 1;
+      int step = offsets[backDirection(v, parent)];
+      for (int w = v; w != parent; w += step) {
+        scratch.link(w, w + step + 1);
+      }
+      v = parent;
+    }
+  }
+}
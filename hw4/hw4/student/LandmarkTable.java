@@ -0,0 +1,366 @@
+package hw4.student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Landmark distance tables for A* with the ALT heuristic (A*, landmarks and the triangle inequality). A few
+ * landmark vertices are picked and the distances from every landmark to every vertex, and from every vertex to
+ * every landmark, are stored. For any landmark L the triangle inequality gives two lower bounds on the distance
+ * from v to t:
+ *
+ * <pre>
+ *   d(v, t) &gt;= d(L, t) - d(L, v)
+ *   d(v, t) &gt;= d(v, L) - d(t, L)
+ * </pre>
+ *
+ * The largest of these bounds over all landmarks follows the real edge weights, so it stays tight on heavily
+ * weighted grids where the Manhattan distance scaled by the smallest weight is far too low. The tables take
+ * 8 * count bytes per vertex and are stored vertex by vertex, so all the bounds of one vertex sit next to each
+ * other in memory.
+ *
+ * Tables can be saved to a little endian file and loaded back by memory mapping it:
+ *
+ * <pre>
+ *   int  magic      "GGLM"
+ *   int  version    currently 1
+ *   int  vertices   number of vertices in the graph
+ *   int  count      number of landmarks
+ *   int  weighted   1 if the tables use edge weights, 0 if every edge counts as 1
+ *   int  reserved   always 0
+ *   long checksum   CRC32C of everything after the header
+ *   int  landmarks[count]
+ *   int  fromLandmark[vertices * count]
+ *   int  toLandmark[vertices * count]
+ * </pre>
+ */
+
+final class LandmarkTable {
+
+  /**
+   * Marks the start of every landmark file ("GGLM" in ASCII)
+   */
+  private static final int MAGIC = 0x4D4C4747;
+
+  /**
+   * Version of the layout written by this class
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Number of bytes before the tables start
+   */
+  private static final int HEADER_BYTES = 32;
+
+  /**
+   * Largest number of bytes mapped or buffered at once
+   */
+  private static final int WINDOW = 1 << 30;
+
+  /**
+   * Number of bytes written to the file at once when saving
+   */
+  private static final int WRITE_CHUNK = 1 << 20;
+
+  /**
+   * Distance stored for a vertex that can not be reached
+   */
+  private static final int UNREACHED = Integer.MAX_VALUE;
+
+  /**
+   * Whether the distances use edge weights or count every edge as 1
+   */
+  final boolean weighted;
+
+  /**
+   * Number of vertices in the graph
+   */
+  final int vertices;
+
+  /**
+   * Number of landmarks
+   */
+  final int count;
+
+  /**
+   * The landmark vertices (zero based indices)
+   */
+  final int[] landmarks;
+
+  /**
+   * fromLandmark[v * count + l] is the distance from landmark l to vertex v
+   */
+  private final int[] fromLandmark;
+
+  /**
+   * toLandmark[v * count + l] is the distance from vertex v to landmark l
+   */
+  private final int[] toLandmark;
+
+  /**
+   * Creates a table from filled in distance arrays
+   *
+   * @param weighted - Whether the distances use edge weights
+   * @param vertices - Number of vertices in the graph
+   * @param landmarks - The landmark vertices (zero based indices)
+   * @param fromLandmark - Distances from each landmark, stored vertex by vertex
+   * @param toLandmark - Distances to each landmark, stored vertex by vertex
+   */
+  private LandmarkTable(boolean weighted, int vertices, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+    this.weighted = weighted;
+    this.vertices = vertices;
+    this.count = landmarks.length;
+    this.landmarks = landmarks;
+    this.fromLandmark = fromLandmark;
+    this.toLandmark = toLandmark;
+  }
+
+  /**
+   * Picks the landmarks and computes their distance tables. Landmarks are picked by farthest selection: each new
+   * landmark is the vertex farthest away from all the landmarks picked so far, which on a grid puts them on the
+   * border, spread around the grid, where they give the tightest bounds. A vertex that no landmark reaches counts
+   * as farthest away, so a graph in several pieces gets a landmark in each piece while there are landmarks left.
+   *
+   * @param adjacency - The graph
+   * @param count - Number of landmarks to pick
+   * @param weighted - Whether edge weights should be used or not
+   * @return - The landmark tables
+   */
+  static LandmarkTable build(GridAdjacency adjacency, int count, boolean weighted) {
+    int n = adjacency.vertices;
+    if (count < 1 || count > n || (long) n * count > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Can not pick " + count + " landmarks in a graph of " + n + " vertices");
+    }
+    int[] landmarks = new int[count];
+    int[] fromLandmark = new int[n * count];
+    int[] toLandmark = new int[n * count];
+    int[] distance = new int[n];
+    IndexedMinHeap heap = new IndexedMinHeap(n);
+
+    //Smallest distance from any landmark picked so far to each vertex, starting from vertex 0 before there are any
+    int[] nearest = new int[n];
+    shortestDistances(adjacency, 0, false, weighted, heap, distance);
+    System.arraycopy(distance, 0, nearest, 0, n);
+
+    for (int l = 0; l < count; l++) {
+      int landmark = 0;
+      for (int v = 1; v < n; v++) {
+        if (nearest[v] > nearest[landmark]) {
+          landmark = v;
+        }
+      }
+      landmarks[l] = landmark;
+
+      shortestDistances(adjacency, landmark, false, weighted, heap, distance);
+      for (int v = 0; v < n; v++) {
+        fromLandmark[v * count + l] = distance[v];
+        nearest[v] = l == 0 ? distance[v] : Math.min(nearest[v], distance[v]);
+      }
+
+      shortestDistances(adjacency, landmark, true, weighted, heap, distance);
+      for (int v = 0; v < n; v++) {
+        toLandmark[v * count + l] = distance[v];
+      }
+    }
+    return new LandmarkTable(weighted, n, landmarks, fromLandmark, toLandmark);
+  }
+
+  /**
+   * Runs Dijkstra's algorithm over the whole graph, or over the reverse graph to get the distances towards the
+   * source instead of away from it
+   *
+   * @param adjacency - The graph
+   * @param source - The vertex the search starts at (zero based index)
+   * @param reverse - Whether the edges are followed backwards
+   * @param weighted - Whether edge weights should be used or not
+   * @param heap - Empty heap to run the search with, left empty again
+   * @param distance - Receives the distance of every vertex, or UNREACHED
+   */
+  private static void shortestDistances(GridAdjacency adjacency, int source, boolean reverse, boolean weighted,
+                                        IndexedMinHeap heap, int[] distance) {
+    Arrays.fill(distance, UNREACHED);
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+    distance[source] = 0;
+    heap.insert(source, 0);
+    while (!heap.isEmpty()) {
+      int u = heap.poll();
+      int du = distance[u];
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int weight = reverse ? adjacency.incomingWeight(u, dir) : weights[u * GridAdjacency.DIRECTIONS + dir];
+        if (weight == 0) {
+          continue;
+        }
+        int j = u + offsets[dir];
+        int candidate = du + (weighted ? weight : 1);
+        if (candidate < distance[j]) {
+          distance[j] = candidate;
+          heap.push(j, candidate);
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the best lower bound the landmarks give on the distance from a vertex to the target. The bounds also
+   * show when the target can not be reached at all: if a landmark reaches v but not t, or t reaches a landmark
+   * that v does not, no path can lead from v to t.
+   *
+   * @param v - The vertex (zero based index)
+   * @param target - The target (zero based index)
+   * @return - A lower bound on the distance from v to the target, or -1 if the target can not be reached from v
+   */
+  int lowerBound(int v, int target) {
+    int bound = 0;
+    int vi = v * count;
+    int ti = target * count;
+    for (int l = 0; l < count; l++) {
+      int fromV = fromLandmark[vi + l];
+      int fromT = fromLandmark[ti + l];
+      if (fromV != UNREACHED) {
+        if (fromT == UNREACHED) {
+          return -1;
+        }
+        bound = Math.max(bound, fromT - fromV);
+      }
+      int toV = toLandmark[vi + l];
+      int toT = toLandmark[ti + l];
+      if (toT != UNREACHED) {
+        if (toV == UNREACHED) {
+          return -1;
+        }
+        bound = Math.max(bound, toV - toT);
+      }
+    }
+    return bound;
+  }
+
+  /**
+   * Writes the tables to a file, replacing the file if it exists
+   *
+   * @param filename - The landmark file
+   * @throws IOException - If the file can not be written
+   */
+  void write(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      CRC32C crc = new CRC32C();
+      ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+      channel.position(HEADER_BYTES);
+      writeInts(channel, landmarks, chunk, crc);
+      writeInts(channel, fromLandmark, chunk, crc);
+      writeInts(channel, toLandmark, chunk, crc);
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(vertices).putInt(count)
+          .putInt(weighted ? 1 : 0).putInt(0)
+          .putLong(crc.getValue());
+      header.flip();
+      channel.position(0);
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+    }
+  }
+
+  /**
+   * Writes an int array at the current position of a file
+   *
+   * @param channel - The file
+   * @param values - The values to write
+   * @param chunk - Buffer the values are staged in
+   * @param crc - Checksum updated with the bytes written
+   * @throws IOException - If the file can not be written
+   */
+  private static void writeInts(FileChannel channel, int[] values, ByteBuffer chunk, CRC32C crc) throws IOException {
+    for (int i = 0; i < values.length; ) {
+      chunk.clear();
+      int n = Math.min(values.length - i, WRITE_CHUNK / Integer.BYTES);
+      chunk.asIntBuffer().put(values, i, n);
+      chunk.limit(n * Integer.BYTES);
+      crc.update(chunk);
+      chunk.flip();
+      while (chunk.hasRemaining()) {
+        channel.write(chunk);
+      }
+      i += n;
+    }
+  }
+
+  /**
+   * Reads tables written by write from a file
+   *
+   * @param filename - The landmark file
+   * @return - The landmark tables saved in the file
+   * @throws IOException - If the file can not be read, is not a landmark file, has an unknown version or is corrupt
+   */
+  static LandmarkTable read(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("File " + filename + " is not a landmark file");
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("File " + filename + " is not a landmark file");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported landmark file version " + version + " in " + filename);
+      }
+      int vertices = header.getInt();
+      int count = header.getInt();
+      boolean weighted = header.getInt() != 0;
+      header.getInt();
+      long checksum = header.getLong();
+
+      long tableLength = (long) vertices * count;
+      if (vertices < 0 || count < 1 || tableLength > Integer.MAX_VALUE
+          || channel.size() != HEADER_BYTES + (count + 2 * tableLength) * Integer.BYTES) {
+        throw new IOException("Landmark file " + filename + " is truncated");
+      }
+      int[] landmarks = new int[count];
+      int[] fromLandmark = new int[(int) tableLength];
+      int[] toLandmark = new int[(int) tableLength];
+
+      CRC32C crc = new CRC32C();
+      long position = readInts(channel, HEADER_BYTES, landmarks, crc);
+      position = readInts(channel, position, fromLandmark, crc);
+      readInts(channel, position, toLandmark, crc);
+      if (crc.getValue() != checksum) {
+        throw new IOException("Landmark file " + filename + " failed its checksum");
+      }
+      return new LandmarkTable(weighted, vertices, landmarks, fromLandmark, toLandmark);
+    }
+  }
+
+  /**
+   * Fills an int array by memory mapping a file one window at a time
+   *
+   * @param channel - The file
+   * @param position - Byte offset the values start at
+   * @param values - Receives the values
+   * @param crc - Checksum updated with the bytes read
+   * @return - Byte offset just after the values
+   * @throws IOException - If the file can not be read
+   */
+  private static long readInts(FileChannel channel, long position, int[] values, CRC32C crc) throws IOException {
+    for (int i = 0; i < values.length; ) {
+      int n = Math.min(values.length - i, WINDOW / Integer.BYTES);
+      MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) n * Integer.BYTES);
+      window.order(ByteOrder.LITTLE_ENDIAN);
+      window.asIntBuffer().get(values, i, n);
+      crc.update(window);
+      position += (long) n * Integer.BYTES;
+      i += n;
+    }
+    return position;
+  }
+}
@@ -0,0 +1,184 @@
+package hw4.student;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with a fixed relative precision, laid out like an HdrHistogram. Values below
+ * 128 ns get one bucket each. Above that every power of two range is split into 64 equal buckets, so a recorded
+ * value is off by at most 1/64 (about 1.6%) of itself, from a nanosecond up to over an hour, in 2432 counters.
+ * Recording is a few shifts and one atomic increment, so queries from many threads can record at once without a
+ * lock.
+ */
+
+public final class LatencyHistogram {
+
+  /**
+   * Number of buckets each power of two range is split into, as a power of two
+   */
+  private static final int SUB_BUCKET_BITS = 6;
+
+  /**
+   * Number of buckets each power of two range is split into
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Values below this get a bucket of their own
+   */
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+  /**
+   * Largest power of two range tracked, larger values are counted in the last bucket
+   */
+  private static final int MAX_MAGNITUDE = 42;
+
+  /**
+   * Number of buckets
+   */
+  private static final int BUCKETS = LINEAR_LIMIT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /**
+   * Number of values recorded in each bucket
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Number of values recorded
+   */
+  private final LongAdder total = new LongAdder();
+
+  /**
+   * Sum of the values recorded, for the mean
+   */
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Largest value recorded
+   */
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Finds the bucket of a value
+   *
+   * @param value - A value that is not negative
+   * @return - The index of its bucket
+   */
+  private static int bucket(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    if (magnitude > MAX_MAGNITUDE) {
+      return BUCKETS - 1;
+    }
+    int shift = magnitude - SUB_BUCKET_BITS;
+    int sub = (int) (value >>> shift) - SUB_BUCKETS;
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Returns the largest value that falls into a bucket
+   *
+   * @param bucket - The index of the bucket
+   * @return - The largest value counted in it
+   */
+  private static long highestValue(int bucket) {
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+    int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    long sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Records one latency
+   *
+   * @param nanos - The latency in nanoseconds, negative values count as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    counts.incrementAndGet(bucket(value));
+    total.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Returns the number of latencies recorded
+   *
+   * @return - The number of recorded values
+   */
+  public long getCount() {
+    return total.sum();
+  }
+
+  /**
+   * Returns the mean latency
+   *
+   * @return - The mean in nanoseconds, or 0 if nothing was recorded
+   */
+  public double getMean() {
+    long count = total.sum();
+    return count == 0 ? 0 : (double) sum.sum() / count;
+  }
+
+  /**
+   * Returns the largest latency recorded
+   *
+   * @return - The largest value in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the latency below which a given share of the recorded values fall. The answer is the top of the bucket
+   * holding that value, so it is never lower than the real value and at most 1.6% higher.
+   *
+   * @param percentile - The share of values, from 0 to 100
+   * @return - The latency in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = total.sum();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts.get(b);
+      if (seen >= rank) {
+        //The last bucket also counts everything past the tracked range, so only the maximum bounds it
+        return b == BUCKETS - 1 ? max.get() : Math.min(highestValue(b), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Forgets every recorded value. Values recorded by other threads while this runs may or may not be kept.
+   */
+  public void reset() {
+    for (int b = 0; b < BUCKETS; b++) {
+      counts.set(b, 0);
+    }
+    total.reset();
+    sum.reset();
+    max.reset();
+  }
+
+  /**
+   * Summarizes the histogram on one line, with the latencies in microseconds
+   *
+   * @return - The count, mean, main percentiles and maximum
+   */
+  @Override
+  public String toString() {
+    return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+        getCount(), getMean() / 1000, getValueAtPercentile(50) / 1000.0, getValueAtPercentile(90) / 1000.0,
+        getValueAtPercentile(99) / 1000.0, getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+  }
+}
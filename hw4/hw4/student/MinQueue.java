@@ -0,0 +1,36 @@
+package hw4.student;
+
+/**
+ * Priority queue of vertices keyed by an integer distance, as used by Dijkstra's algorithm. A vertex is in the
+ * queue at most once: pushing it again only lowers its key.
+ */
+
+interface MinQueue {
+
+  /**
+   * Checks if the queue is empty
+   *
+   * @return - True if there are no vertices left in the queue
+   */
+  boolean isEmpty();
+
+  /**
+   * Adds a vertex to the queue, or lowers its key if it is already there
+   *
+   * @param v - The vertex to add or update
+   * @param key - The new key of the vertex
+   */
+  void push(int v, int key);
+
+  /**
+   * Removes the vertex with the smallest key. The queue must not be empty.
+   *
+   * @return - The vertex that had the smallest key
+   */
+  int poll();
+
+  /**
+   * Removes every vertex from the queue
+   */
+  void clear();
+}
@@ -0,0 +1,142 @@
+package hw4.student;
+
+/**
+ * What one shortest path query cost: how much of the graph it explored and how long it took. Queries answered from
+ * the tree cache report the work of building the tree if they built it, and no work otherwise.
+ */
+
+public final class QueryStats {
+
+  /**
+   * The search algorithm of the query
+   */
+  private final SearchMode mode;
+
+  /**
+   * Whether the query used edge weights
+   */
+  private final boolean weighted;
+
+  /**
+   * Number of vertices settled
+   */
+  private final long settled;
+
+  /**
+   * Number of edge relaxations that recorded a new distance
+   */
+  private final long relaxations;
+
+  /**
+   * Number of priority queue or FIFO queue operations
+   */
+  private final long queueOperations;
+
+  /**
+   * Number of vertices on the path found, 0 if there is none
+   */
+  private final int pathLength;
+
+  /**
+   * Time the query took in nanoseconds
+   */
+  private final long nanos;
+
+  /**
+   * Creates the statistics of a query
+   *
+   * @param mode - The search algorithm of the query
+   * @param weighted - Whether the query used edge weights
+   * @param settled - Number of vertices settled
+   * @param relaxations - Number of edge relaxations that recorded a new distance
+   * @param queueOperations - Number of queue operations
+   * @param pathLength - Number of vertices on the path found
+   * @param nanos - Time the query took in nanoseconds
+   */
+  QueryStats(SearchMode mode, boolean weighted, long settled, long relaxations, long queueOperations, int pathLength,
+             long nanos) {
+    this.mode = mode;
+    this.weighted = weighted;
+    this.settled = settled;
+    this.relaxations = relaxations;
+    this.queueOperations = queueOperations;
+    this.pathLength = pathLength;
+    this.nanos = nanos;
+  }
+
+  /**
+   * Returns the search algorithm of the query
+   *
+   * @return - The search mode
+   */
+  public SearchMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Checks whether the query used edge weights
+   *
+   * @return - True if edge weights were used
+   */
+  public boolean isWeighted() {
+    return weighted;
+  }
+
+  /**
+   * Returns the number of vertices settled, over both directions for bidirectional searches. A one way
+   * breadth-first search settles nothing, since a vertex is final as soon as it is reached, so its work only shows
+   * in the relaxations and queue operations.
+   *
+   * @return - The number of settled vertices
+   */
+  public long getSettled() {
+    return settled;
+  }
+
+  /**
+   * Returns the number of edge relaxations that recorded a new distance
+   *
+   * @return - The number of successful relaxations
+   */
+  public long getRelaxations() {
+    return relaxations;
+  }
+
+  /**
+   * Returns the number of priority queue or FIFO queue operations
+   *
+   * @return - The number of queue operations
+   */
+  public long getQueueOperations() {
+    return queueOperations;
+  }
+
+  /**
+   * Returns the number of vertices on the path found
+   *
+   * @return - The path length in vertices, 0 if the target could not be reached
+   */
+  public int getPathLength() {
+    return pathLength;
+  }
+
+  /**
+   * Returns the time the query took
+   *
+   * @return - The latency in nanoseconds
+   */
+  public long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * Describes the query on one line
+   *
+   * @return - The mode and every count
+   */
+  @Override
+  public String toString() {
+    return mode + (weighted ? " weighted" : " unweighted") + ": settled=" + settled + " relaxations=" + relaxations
+        + " queueOperations=" + queueOperations + " pathLength=" + pathLength + " time=" + nanos / 1000 + "us";
+  }
+}
@@ -0,0 +1,42 @@
+package hw4.student;
+
+/**
+ * Watches a single query of a GridGraph as it runs, see GridGraph.findPath(int, int, boolean, SearchMode,
+ * SearchListener). The search reports the vertices it settles and the vertices whose distance it records or
+ * improves, in batches of up to SearchScratch.BATCH_SIZE, and then the path it found. Every call comes from the
+ * thread running the query, so a listener should hand the vertices over to another thread rather than do slow work
+ * itself, or the search slows down with it.
+ *
+ * A breadth-first search, used for unweighted DIJKSTRA queries, never settles vertices separately, since a vertex's
+ * distance is final as soon as it is reached, so it only reports relaxed vertices. A query answered from the tree
+ * cache reports nothing unless the tree had to be built first.
+ */
+
+public interface SearchListener {
+
+  /**
+   * Receives a batch of vertices whose distance became final. The array is reused for the next batch, so it may
+   * only be read during the call.
+   *
+   * @param vertices - The settled vertices (one based indices)
+   * @param count - The number of vertices in the array that belong to this batch
+   */
+  void settled(int[] vertices, int count);
+
+  /**
+   * Receives a batch of vertices whose distance was recorded or improved, one for each successful edge relaxation,
+   * so a vertex may show up more than once. The array is reused for the next batch, so it may only be read during
+   * the call.
+   *
+   * @param vertices - The relaxed vertices (one based indices)
+   * @param count - The number of vertices in the array that belong to this batch
+   */
+  void relaxed(int[] vertices, int count);
+
+  /**
+   * Called once the query is done, after the last batch
+   *
+   * @param path - The vertices of the path found (one based indices), or GridGraph.NO_PATH if there is none
+   */
+  void finished(int[] path);
+}
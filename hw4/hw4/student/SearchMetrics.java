@@ -0,0 +1,247 @@
+package hw4.student;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the queries answered by a GridGraph, kept per search mode and per weighted
+ * flag. Every query adds the vertices it settled, the edge relaxations that improved a distance, its priority queue
+ * operations and the length of its path, and records its latency. Batch calls also record the latency of the whole
+ * batch. Counters are LongAdders and the histograms are lock free, so threads answering queries at the same time do
+ * not contend on them. The statistics of the last query of each thread are kept as well, so a caller can see what a
+ * query it just made cost.
+ */
+
+public final class SearchMetrics {
+
+  /**
+   * Totals of every mode, weighted and unweighted, indexed by slot(mode, weighted)
+   */
+  private final Totals[] totals;
+
+  /**
+   * Latencies of whole batches, for weighted and for unweighted batches
+   */
+  private final LatencyHistogram weightedBatches = new LatencyHistogram();
+  private final LatencyHistogram unweightedBatches = new LatencyHistogram();
+
+  /**
+   * Statistics of the last query answered by each thread
+   */
+  private final ThreadLocal<QueryStats> lastQuery = new ThreadLocal<>();
+
+  /**
+   * Creates empty metrics
+   */
+  SearchMetrics() {
+    totals = new Totals[SearchMode.values().length * 2];
+    for (int i = 0; i < totals.length; i++) {
+      totals[i] = new Totals();
+    }
+  }
+
+  /**
+   * Finds the totals of a mode and weighted flag
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The totals
+   */
+  private Totals totals(SearchMode mode, boolean weighted) {
+    return totals[mode.ordinal() * 2 + (weighted ? 1 : 0)];
+  }
+
+  /**
+   * Adds one query to the metrics
+   *
+   * @param stats - The statistics of the query
+   */
+  void record(QueryStats stats) {
+    Totals t = totals(stats.getMode(), stats.isWeighted());
+    t.queries.increment();
+    t.settled.add(stats.getSettled());
+    t.relaxations.add(stats.getRelaxations());
+    t.queueOperations.add(stats.getQueueOperations());
+    t.pathVertices.add(stats.getPathLength());
+    t.latency.record(stats.getNanos());
+    lastQuery.set(stats);
+  }
+
+  /**
+   * Adds the latency of one batch call to the metrics
+   *
+   * @param weighted - Whether the batch used edge weights
+   * @param nanos - Time the whole batch took in nanoseconds
+   */
+  void recordBatch(boolean weighted, long nanos) {
+    getBatchLatency(weighted).record(nanos);
+  }
+
+  /**
+   * Returns the statistics of the last query the calling thread made while metrics were on
+   *
+   * @return - The statistics of that query, or null if the thread has not made one
+   */
+  public QueryStats getLastQuery() {
+    return lastQuery.get();
+  }
+
+  /**
+   * Returns the number of queries answered
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The number of queries
+   */
+  public long getQueries(SearchMode mode, boolean weighted) {
+    return totals(mode, weighted).queries.sum();
+  }
+
+  /**
+   * Returns the number of vertices settled over all queries
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The total number of settled vertices
+   */
+  public long getSettled(SearchMode mode, boolean weighted) {
+    return totals(mode, weighted).settled.sum();
+  }
+
+  /**
+   * Returns the number of edge relaxations that improved a distance over all queries
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The total number of successful relaxations
+   */
+  public long getRelaxations(SearchMode mode, boolean weighted) {
+    return totals(mode, weighted).relaxations.sum();
+  }
+
+  /**
+   * Returns the number of priority queue and FIFO queue operations over all queries
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The total number of queue operations
+   */
+  public long getQueueOperations(SearchMode mode, boolean weighted) {
+    return totals(mode, weighted).queueOperations.sum();
+  }
+
+  /**
+   * Returns the number of vertices on all the paths found
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The total path length in vertices
+   */
+  public long getPathVertices(SearchMode mode, boolean weighted) {
+    return totals(mode, weighted).pathVertices.sum();
+  }
+
+  /**
+   * Returns the latency distribution of single queries
+   *
+   * @param mode - The search mode
+   * @param weighted - Whether the queries used edge weights
+   * @return - The live histogram, which keeps filling as queries are answered
+   */
+  public LatencyHistogram getLatency(SearchMode mode, boolean weighted) {
+    return totals(mode, weighted).latency;
+  }
+
+  /**
+   * Returns the latency distribution of whole batch calls
+   *
+   * @param weighted - Whether the batches used edge weights
+   * @return - The live histogram, which keeps filling as batches are answered
+   */
+  public LatencyHistogram getBatchLatency(boolean weighted) {
+    return weighted ? weightedBatches : unweightedBatches;
+  }
+
+  /**
+   * Zeroes every counter and histogram. The last query of each thread is kept.
+   */
+  public void reset() {
+    for (Totals t : totals) {
+      t.queries.reset();
+      t.settled.reset();
+      t.relaxations.reset();
+      t.queueOperations.reset();
+      t.pathVertices.reset();
+      t.latency.reset();
+    }
+    weightedBatches.reset();
+    unweightedBatches.reset();
+  }
+
+  /**
+   * Describes the metrics as text, one line per mode and weighted flag that answered any query, with the average
+   * work per query and the latency distribution, followed by the batch latencies
+   *
+   * @return - The metrics as text
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (SearchMode mode : SearchMode.values()) {
+      for (boolean weighted : new boolean[] {true, false}) {
+        Totals t = totals(mode, weighted);
+        long queries = t.queries.sum();
+        if (queries == 0) {
+          continue;
+        }
+        builder.append(String.format("%s %s: queries=%d settled/query=%.1f relaxations/query=%.1f "
+                + "queueOperations/query=%.1f pathLength/query=%.1f latency: %s%n",
+            mode, weighted ? "weighted" : "unweighted", queries, (double) t.settled.sum() / queries,
+            (double) t.relaxations.sum() / queries, (double) t.queueOperations.sum() / queries,
+            (double) t.pathVertices.sum() / queries, t.latency));
+      }
+    }
+    for (boolean weighted : new boolean[] {true, false}) {
+      LatencyHistogram batches = getBatchLatency(weighted);
+      if (batches.getCount() > 0) {
+        builder.append(String.format("batch %s: %s%n", weighted ? "weighted" : "unweighted", batches));
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Running totals of one search mode and weighted flag
+   */
+  private static final class Totals {
+
+    /**
+     * Number of queries
+     */
+    final LongAdder queries = new LongAdder();
+
+    /**
+     * Number of settled vertices
+     */
+    final LongAdder settled = new LongAdder();
+
+    /**
+     * Number of successful edge relaxations
+     */
+    final LongAdder relaxations = new LongAdder();
+
+    /**
+     * Number of queue operations
+     */
+    final LongAdder queueOperations = new LongAdder();
+
+    /**
+     * Number of vertices on the paths found
+     */
+    final LongAdder pathVertices = new LongAdder();
+
+    /**
+     * Latency of each query
+     */
+    final LatencyHistogram latency = new LatencyHistogram();
+  }
+}
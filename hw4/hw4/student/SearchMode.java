@@ -0,0 +1,43 @@
+package hw4.student;
+
+/**
+ * The search algorithms GridGraph can use to answer a shortest path query. Every mode returns a path of the same
+ * length, they only differ in how much of the graph they explore to find it.
+ */
+
+public enum SearchMode {
+
+  /**
+   * Dijkstra's algorithm for weighted queries, and a breadth-first search for unweighted ones
+   */
+  DIJKSTRA,
+
+  /**
+   * A* search guided by the Manhattan distance to the target, scaled by the smallest edge weight
+   */
+  A_STAR,
+
+  /**
+   * A* search guided by landmark distances and the triangle inequality, which needs landmark tables built first
+   * with GridGraph.buildLandmarks
+   */
+  ALT,
+
+  /**
+   * Dijkstra's algorithm run forwards from the source and backwards from the target at the same time
+   */
+  BIDIRECTIONAL,
+
+  /**
+   * Bidirectional upward search over a contraction hierarchy, which has to be built first with
+   * GridGraph.buildContractionHierarchy
+   */
+  CONTRACTION_HIERARCHY,
+
+  /**
+   * Jump point search, which follows one canonical path out of every set of equally short ones and only queues the
+   * vertices where such paths turn. It needs every step to cost the same, so weighted queries on a graph whose
+   * weights differ run an A* search instead. The first query builds a table of 8 bytes per vertex.
+   */
+  JUMP_POINT
+}
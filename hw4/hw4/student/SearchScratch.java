@@ -0,0 +1,394 @@
+package hw4.student;
+
+import java.util.Arrays;
+
+/**
+ * Working memory for one search over a grid graph. Each thread keeps its own scratch, so searches never share
+ * state and nothing of size V is allocated per query. Instead of clearing the arrays before every search, each
+ * vertex carries a generation stamp: a value only counts if its stamp matches the current generation, so starting a
+ * new search is O(1).
+ */
+
+final class SearchScratch {
+
+  /**
+   * Number of vertices the scratch was made for
+   */
+  final int vertices;
+
+  /**
+   * Generation of the current search
+   */
+  private int generation;
+
+  /**
+   * Generation in which each vertex was last reached, its distance and predecessor only count if this matches
+   */
+  private final int[] reached;
+
+  /**
+   * Generation in which each vertex was last settled
+   */
+  private final int[] settled;
+
+  /**
+   * Best distance found so far for each reached vertex
+   */
+  private final int[] distance;
+
+  /**
+   * One based predecessor of each reached vertex
+   */
+  private final int[] predecessor;
+
+  /**
+   * Number of vertices settled while counting, only read by the search metrics
+   */
+  private long settledCount;
+
+  /**
+   * Number of distance improvements made while counting, only read by the search metrics
+   */
+  private long reachedCount;
+
+  /**
+   * Whether settled vertices, relaxations and queue operations are counted, only while the search metrics measure a
+   * query
+   */
+  private boolean counting;
+
+  /**
+   * Whether the counters or a listener watch this scratch, so settling and reaching cost a single check while
+   * neither does
+   */
+  private boolean observed;
+
+  /**
+   * Largest number of vertices handed to a listener in one call
+   */
+  static final int BATCH_SIZE = 1024;
+
+  /**
+   * Receives the vertices settled and reached during a watched query, or null when nobody is watching
+   */
+  private SearchListener listener;
+
+  /**
+   * Vertices settled and reached since the last batch was handed to the listener (one based indices), created when
+   * a listener is first set
+   */
+  private int[] settledBatch;
+  private int[] relaxedBatch;
+
+  /**
+   * Number of vertices waiting in each batch
+   */
+  private int settledWaiting;
+  private int relaxedWaiting;
+
+  /**
+   * Priority queue for the weighted searches
+   */
+  final IndexedMinHeap heap;
+
+  /**
+   * Queue for the breadth-first search
+   */
+  final IntRingQueue queue;
+
+  /**
+   * Bucket queue for graphs with small weights, created on first use
+   */
+  private BucketQueue buckets;
+
+  /**
+   * Buffer that paths are traced into, created on first use
+   */
+  private int[] path;
+
+  /**
+   * Work stack for unpacking contraction hierarchy shortcuts, created on first use
+   */
+  private int[] stack;
+
+  /**
+   * Second scratch used by searches that also run backwards from the target, created on first use
+   */
+  private SearchScratch backward;
+
+  /**
+   * Creates the scratch for a graph with the given number of vertices
+   *
+   * @param vertices - The number of vertices in the graph
+   */
+  SearchScratch(int vertices) {
+    this.vertices = vertices;
+    reached = new int[vertices];
+    settled = new int[vertices];
+    distance = new int[vertices];
+    predecessor = new int[vertices];
+    heap = new IndexedMinHeap(vertices);
+    queue = new IntRingQueue(vertices);
+  }
+
+  /**
+   * Starts a new search. Every vertex becomes unreached and unsettled and both queues are emptied.
+   */
+  void reset() {
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      //The stamps are about to wrap around, so clear them for real once
+      Arrays.fill(reached, 0);
+      Arrays.fill(settled, 0);
+      generation = 1;
+    }
+    heap.clear();
+    queue.clear();
+    if (buckets != null) {
+      buckets.clear();
+    }
+  }
+
+  /**
+   * Checks if a vertex has been reached in the current search
+   *
+   * @param v - Zero based index of the vertex
+   * @return - True if the vertex has a distance
+   */
+  boolean isReached(int v) {
+    return reached[v] == generation;
+  }
+
+  /**
+   * Returns the best distance found so far for a vertex
+   *
+   * @param v - Zero based index of the vertex
+   * @return - The distance, or Integer.MAX_VALUE if the vertex has not been reached
+   */
+  int distance(int v) {
+    return reached[v] == generation ? distance[v] : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Returns the predecessor of a vertex
+   *
+   * @param v - Zero based index of the vertex
+   * @return - The one based predecessor, or 0 if the vertex has not been reached or is the source
+   */
+  int predecessor(int v) {
+    return reached[v] == generation ? predecessor[v] : 0;
+  }
+
+  /**
+   * Records a new best distance and predecessor for a vertex
+   *
+   * @param v - Zero based index of the vertex
+   * @param dist - The distance of the vertex
+   * @param pred - The one based predecessor of the vertex, 0 for the source
+   */
+  void reach(int v, int dist, int pred) {
+    reached[v] = generation;
+    distance[v] = dist;
+    predecessor[v] = pred;
+    if (observed) {
+      if (counting) {
+        reachedCount++;
+      }
+      if (listener != null) {
+        relaxedBatch[relaxedWaiting++] = v + 1;
+        if (relaxedWaiting == BATCH_SIZE) {
+          flush();
+        }
+      }
+    }
+  }
+
+  /**
+   * Changes only the predecessor of a vertex, used when joining paths after a search is done
+   *
+   * @param v - Zero based index of the vertex
+   * @param pred - The one based predecessor of the vertex
+   */
+  void link(int v, int pred) {
+    if (reached[v] != generation) {
+      reached[v] = generation;
+      distance[v] = Integer.MAX_VALUE;
+    }
+    predecessor[v] = pred;
+  }
+
+  /**
+   * Checks if a vertex has been settled in the current search
+   *
+   * @param v - Zero based index of the vertex
+   * @return - True if the distance of the vertex is final
+   */
+  boolean isSettled(int v) {
+    return settled[v] == generation;
+  }
+
+  /**
+   * Marks a vertex as settled
+   *
+   * @param v - Zero based index of the vertex
+   */
+  void settle(int v) {
+    settled[v] = generation;
+    if (observed) {
+      if (counting) {
+        settledCount++;
+      }
+      if (listener != null) {
+        settledBatch[settledWaiting++] = v + 1;
+        if (settledWaiting == BATCH_SIZE) {
+          flush();
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the listener that receives the vertices this scratch and its backward half settle and reach, handing any
+   * vertices still waiting to the old listener first. While no listener is set and nothing is counted, settling and
+   * reaching only cost one extra check.
+   *
+   * @param watcher - The new listener, or null to stop reporting
+   */
+  void listen(SearchListener watcher) {
+    flush();
+    if (watcher != null && settledBatch == null) {
+      settledBatch = new int[BATCH_SIZE];
+      relaxedBatch = new int[BATCH_SIZE];
+    }
+    listener = watcher;
+    observed = counting || watcher != null;
+    if (backward != null) {
+      backward.listen(watcher);
+    }
+  }
+
+  /**
+   * Turns counting of settled vertices, relaxations and queue operations on or off for this scratch, its queues and
+   * its backward half. Counting is only on while the search metrics measure a query, so a query made while metrics
+   * are off never touches the counters.
+   *
+   * @param on - True to count, false to stop counting
+   */
+  void count(boolean on) {
+    counting = on;
+    observed = on || listener != null;
+    heap.counting = on;
+    queue.counting = on;
+    if (buckets != null) {
+      buckets.counting = on;
+    }
+    if (backward != null) {
+      backward.count(on);
+    }
+  }
+
+  /**
+   * Hands the vertices waiting in both batches to the listener
+   */
+  private void flush() {
+    if (listener == null) {
+      return;
+    }
+    if (settledWaiting > 0) {
+      listener.settled(settledBatch, settledWaiting);
+      settledWaiting = 0;
+    }
+    if (relaxedWaiting > 0) {
+      listener.relaxed(relaxedBatch, relaxedWaiting);
+      relaxedWaiting = 0;
+    }
+  }
+
+  /**
+   * Returns the number of vertices settled while counting by this scratch and its backward half. The count never
+   * resets, so the work of one query is the difference between two readings.
+   *
+   * @return - The number of settled vertices
+   */
+  long settledCount() {
+    return settledCount + (backward == null ? 0 : backward.settledCount());
+  }
+
+  /**
+   * Returns the number of times a distance was recorded or improved while counting by this scratch and its backward
+   * half, which is the number of successful edge relaxations
+   *
+   * @return - The number of relaxations
+   */
+  long reachedCount() {
+    return reachedCount + (backward == null ? 0 : backward.reachedCount());
+  }
+
+  /**
+   * Returns the number of priority queue and FIFO queue operations done while counting by this scratch and its
+   * backward half
+   *
+   * @return - The number of queue operations
+   */
+  long queueOperations() {
+    return heap.operations + queue.operations + (buckets == null ? 0 : buckets.operations)
+        + (backward == null ? 0 : backward.queueOperations());
+  }
+
+  /**
+   * Returns a bucket queue for a graph whose weights are at most maxWeight, making a new one if the current one is
+   * too small
+   *
+   * @param maxWeight - The largest edge weight of the graph
+   * @return - An empty bucket queue
+   */
+  BucketQueue buckets(int maxWeight) {
+    if (buckets == null || buckets.maxWeight() < maxWeight) {
+      BucketQueue larger = new BucketQueue(vertices, maxWeight);
+      if (buckets != null) {
+        larger.operations = buckets.operations;
+      }
+      larger.counting = counting;
+      buckets = larger;
+    }
+    return buckets;
+  }
+
+  /**
+   * Returns a buffer large enough to hold any path in the graph
+   *
+   * @return - An array with one slot per vertex
+   */
+  int[] path() {
+    if (path == null) {
+      path = new int[vertices];
+    }
+    return path;
+  }
+
+  /**
+   * Returns a work stack large enough to unpack any path of shortcuts in the graph
+   *
+   * @return - An array with one slot per vertex
+   */
+  int[] stack() {
+    if (stack == null) {
+      stack = new int[vertices];
+    }
+    return stack;
+  }
+
+  /**
+   * Returns the scratch for the backward half of a bidirectional search
+   *
+   * @return - A second scratch of the same size
+   */
+  SearchScratch backward() {
+    if (backward == null) {
+      backward = new SearchScratch(vertices);
+      backward.listen(listener);
+      backward.count(counting);
+    }
+    return backward;
+  }
+}
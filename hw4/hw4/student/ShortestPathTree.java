@@ -0,0 +1,280 @@
+package hw4.student;
+
+/**
+ * The result of a full single source search over a grid graph: the distance from the source to every vertex and the
+ * predecessor of every vertex on its shortest path. Once a tree is built, the path to any target can be read off in
+ * O(path length) without searching again.
+ */
+
+public final class ShortestPathTree {
+
+  /**
+   * Source vertex of the tree (one based index)
+   */
+  private final int source;
+
+  /**
+   * Whether the tree was built with edge weights or with every edge counting as 1
+   */
+  private final boolean weighted;
+
+  /**
+   * Distance from the source to each vertex (zero based index), Integer.MAX_VALUE if it can not be reached
+   */
+  final int[] distance;
+
+  /**
+   * One based predecessor of each vertex (zero based index), 0 for the source and unreachable vertices
+   */
+  final int[] predecessor;
+
+  /**
+   * Creates a tree from arrays filled by a search
+   *
+   * @param source - Source vertex (one based index)
+   * @param weighted - Whether edge weights were used or not
+   * @param distance - Distance of each vertex from the source
+   * @param predecessor - One based predecessor of each vertex
+   */
+  ShortestPathTree(int source, boolean weighted, int[] distance, int[] predecessor) {
+    this.source = source;
+    this.weighted = weighted;
+    this.distance = distance;
+    this.predecessor = predecessor;
+  }
+
+  /**
+   * Returns the source vertex of the tree
+   *
+   * @return - The source vertex (one based index)
+   */
+  public int getSource() {
+    return source;
+  }
+
+  /**
+   * Checks whether the tree was built with edge weights
+   *
+   * @return - True if edge weights were used, false if every edge counted as 1
+   */
+  public boolean isWeighted() {
+    return weighted;
+  }
+
+  /**
+   * Returns the length of the shortest path from the source to a vertex
+   *
+   * @param v - The target vertex (one based index)
+   * @return - The length of the shortest path, or -1 if the vertex can not be reached
+   */
+  public int distanceTo(int v) {
+    checkVertex(v);
+    int d = distance[v - 1];
+    return d == Integer.MAX_VALUE ? -1 : d;
+  }
+
+  /**
+   * Writes the shortest path from the source to a target vertex into a buffer
+   *
+   * @param t - The target vertex (one based index)
+   * @param path - Buffer that receives the vertices of the path (one based indices)
+   * @return - The number of vertices written, or GridGraph.UNREACHABLE if the target can not be reached
+   */
+  public int pathTo(int t, int[] path) {
+    int length = pathLength(t);
+    if (length == GridGraph.UNREACHABLE) {
+      return GridGraph.UNREACHABLE;
+    }
+    if (path.length < length) {
+      throw new IllegalArgumentException("The path has " + length + " vertices but the buffer only holds " + path.length);
+    }
+    fillPath(t, length, path);
+    return length;
+  }
+
+  /**
+   * Returns the shortest path from the source to a target vertex
+   *
+   * @param t - The target vertex (one based index)
+   * @return - The vertices of the path (one based indices), or GridGraph.NO_PATH if the target can not be reached
+   */
+  public int[] pathTo(int t) {
+    int length = pathLength(t);
+    if (length == GridGraph.UNREACHABLE) {
+      return GridGraph.NO_PATH;
+    }
+    int[] path = new int[length];
+    fillPath(t, length, path);
+    return path;
+  }
+
+  /**
+   * Writes the path to a target vertex backwards from its end, so it comes out in order without reversing it
+   *
+   * @param t - The target vertex (one based index)
+   * @param length - The number of vertices on the path, as counted by pathLength
+   * @param path - Buffer that receives the vertices of the path (one based indices)
+   */
+  private void fillPath(int t, int length, int[] path) {
+    int v = t;
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = v;
+      v = predecessor[v - 1];
+    }
+  }
+
+  /**
+   * Counts the vertices on the shortest path from the source to a target vertex by walking its predecessors
+   *
+   * @param t - The target vertex (one based index)
+   * @return - The number of vertices on the path, or GridGraph.UNREACHABLE if the target can not be reached
+   */
+  private int pathLength(int t) {
+    checkVertex(t);
+    if (distance[t - 1] == Integer.MAX_VALUE) {
+      return GridGraph.UNREACHABLE;
+    }
+    int length = 1;
+    for (int v = t; v != source; v = predecessor[v - 1]) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Makes sure a vertex exists in the graph the tree was built on
+   *
+   * @param v - The vertex to check (one based index)
+   */
+  private void checkVertex(int v) {
+    if (v < 1 || v > distance.length) {
+      throw new IllegalArgumentException("Vertex " + v + " is not between 1 and " + distance.length);
+    }
+  }
+
+  /**
+   * Brings the tree up to date after some edge weights changed, without searching the whole graph again. Only the
+   * vertices whose shortest path can change are settled again:
+   *
+   * <ul>
+   *   <li>An edge of the tree that got heavier or was removed cuts off the subtree below it. Every vertex in such a
+   *   subtree loses its distance and starts over from the best edge entering it from outside the cut off part.</li>
+   *   <li>An edge that got lighter or was added only matters if it gives its end vertex a shorter distance.</li>
+   * </ul>
+   *
+   * Dijkstra's algorithm then runs from just those vertices until no distance improves. On a grid the children of a
+   * vertex are found among its four neighbours, so no child lists are needed to walk a subtree. The tree itself is
+   * never changed, a repaired copy is returned, so anyone still holding the old tree keeps a consistent answer for
+   * the old weights.
+   *
+   * @param adjacency - The graph, with the new weights already stored
+   * @param from - Zero based index of the vertex each changed edge starts at
+   * @param dirs - Direction of each changed edge
+   * @param oldWeights - Weight of each changed edge before the change
+   * @param scratch - Scratch buffers used for the repair
+   * @return - The repaired tree, or this tree if none of the changes affect it
+   */
+  ShortestPathTree repair(GridAdjacency adjacency, int[] from, int[] dirs, int[] oldWeights, SearchScratch scratch) {
+    scratch.reset();
+    int[] weights = adjacency.weights;
+    int[] offsets = adjacency.offsets;
+
+    //Roots of the cut off subtrees are marked as reached and listed, then the list grows into the whole subtrees
+    int[] affected = scratch.path();
+    int affectedCount = 0;
+    boolean improves = false;
+    for (int i = 0; i < from.length; i++) {
+      int a = from[i];
+      int b = a + offsets[dirs[i]];
+      int before = cost(oldWeights[i]);
+      int after = cost(weights[a * GridAdjacency.DIRECTIONS + dirs[i]]);
+      if (before != 0 && (after == 0 || after > before)) {
+        if (predecessor[b] == a + 1 && !scratch.isReached(b)) {
+          scratch.reach(b, 0, 0);
+          affected[affectedCount++] = b;
+        }
+      } else if (after != 0 && distance[a] != Integer.MAX_VALUE && distance[a] + after < distance[b]) {
+        improves = true;
+      }
+    }
+    if (affectedCount == 0 && !improves) {
+      return this;
+    }
+    for (int k = 0; k < affectedCount; k++) {
+      int x = affected[k];
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        if (adjacency.hasNeighbour(x, dir)) {
+          int y = x + offsets[dir];
+          if (predecessor[y] == x + 1 && !scratch.isReached(y)) {
+            scratch.reach(y, 0, 0);
+            affected[affectedCount++] = y;
+          }
+        }
+      }
+    }
+
+    int[] dist = distance.clone();
+    int[] pred = predecessor.clone();
+    for (int k = 0; k < affectedCount; k++) {
+      dist[affected[k]] = Integer.MAX_VALUE;
+      pred[affected[k]] = 0;
+    }
+
+    //Every cut off vertex restarts from the best edge that enters it from a vertex whose distance is still valid
+    IndexedMinHeap heap = scratch.heap;
+    for (int k = 0; k < affectedCount; k++) {
+      int x = affected[k];
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int w = cost(adjacency.incomingWeight(x, dir));
+        int p = x + offsets[dir];
+        if (w != 0 && !scratch.isReached(p) && dist[p] != Integer.MAX_VALUE && dist[p] + w < dist[x]) {
+          dist[x] = dist[p] + w;
+          pred[x] = p + 1;
+        }
+      }
+      if (dist[x] != Integer.MAX_VALUE) {
+        heap.push(x, dist[x]);
+      }
+    }
+
+    //Edges that got lighter restart their end vertex if they shorten its path
+    for (int i = 0; i < from.length; i++) {
+      int a = from[i];
+      int b = a + offsets[dirs[i]];
+      int after = cost(weights[a * GridAdjacency.DIRECTIONS + dirs[i]]);
+      if (after != 0 && dist[a] != Integer.MAX_VALUE && dist[a] + after < dist[b]) {
+        dist[b] = dist[a] + after;
+        pred[b] = a + 1;
+        heap.push(b, dist[b]);
+      }
+    }
+
+    while (!heap.isEmpty()) {
+      int u = heap.poll();
+      int du = dist[u];
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int w = cost(weights[u * GridAdjacency.DIRECTIONS + dir]);
+        if (w == 0) {
+          continue;
+        }
+        int y = u + offsets[dir];
+        if (du + w < dist[y]) {
+          dist[y] = du + w;
+          pred[y] = u + 1;
+          heap.push(y, dist[y]);
+        }
+      }
+    }
+    return new ShortestPathTree(source, weighted, dist, pred);
+  }
+
+  /**
+   * Returns what an edge costs in this tree
+   *
+   * @param weight - The stored weight of the edge
+   * @return - The weight, or 1 if the tree ignores weights, or 0 if there is no edge
+   */
+  private int cost(int weight) {
+    return weighted || weight == 0 ? weight : 1;
+  }
+}
@@ -0,0 +1,102 @@
+package hw4.student;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded cache of shortest path trees keyed by source vertex and weighted flag. Every tree holds two arrays of V
+ * ints, so bounding the number of trees bounds the memory used. When the cache is full the least recently used
+ * tree is evicted. All methods are synchronized, since batch queries read the cache from many threads.
+ */
+
+final class ShortestPathTreeCache {
+
+  /**
+   * Largest number of trees kept at once
+   */
+  private final int capacity;
+
+  /**
+   * The cached trees, kept in access order so the eldest entry is the least recently used one
+   */
+  private final LinkedHashMap<Long, ShortestPathTree> trees;
+
+  /**
+   * Creates an empty cache
+   *
+   * @param capacity - Largest number of trees kept at once
+   */
+  ShortestPathTreeCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The cache must hold at least one tree, got " + capacity);
+    }
+    this.capacity = capacity;
+    this.trees = new LinkedHashMap<Long, ShortestPathTree>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, ShortestPathTree> eldest) {
+        return size() > ShortestPathTreeCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Builds the key of a tree
+   *
+   * @param source - Source vertex (one based index)
+   * @param weighted - Whether edge weights were used or not
+   * @return - The key for the pair
+   */
+  private static long key(int source, boolean weighted) {
+    return ((long) source << 1) | (weighted ? 1 : 0);
+  }
+
+  /**
+   * Looks up a tree and marks it as recently used
+   *
+   * @param source - Source vertex (one based index)
+   * @param weighted - Whether edge weights were used or not
+   * @return - The cached tree, or null if there is none
+   */
+  synchronized ShortestPathTree get(int source, boolean weighted) {
+    return trees.get(key(source, weighted));
+  }
+
+  /**
+   * Adds a tree, evicting the least recently used tree if the cache is full
+   *
+   * @param tree - The tree to add
+   */
+  synchronized void put(ShortestPathTree tree) {
+    trees.put(key(tree.getSource(), tree.isWeighted()), tree);
+  }
+
+  /**
+   * Returns the number of trees in the cache
+   *
+   * @return - The number of cached trees
+   */
+  synchronized int size() {
+    return trees.size();
+  }
+
+  /**
+   * Makes a cache of the same capacity that holds the result of a function for every tree, used to carry repaired
+   * trees over to a new version of the graph. This cache is left as it is, and the order of use is kept.
+   *
+   * @param update - Returns the tree to keep in place of the given one
+   * @return - The new cache
+   */
+  ShortestPathTreeCache map(UnaryOperator<ShortestPathTree> update) {
+    ShortestPathTree[] current;
+    synchronized (this) {
+      current = trees.values().toArray(new ShortestPathTree[0]);
+    }
+    //The trees are updated outside of the lock, so queries on the old version are not held up
+    ShortestPathTreeCache copy = new ShortestPathTreeCache(capacity);
+    for (ShortestPathTree tree : current) {
+      copy.put(update.apply(tree));
+    }
+    return copy;
+  }
+}
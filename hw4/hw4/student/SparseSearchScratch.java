@@ -0,0 +1,272 @@
+package hw4.student;
+
+import java.util.Arrays;
+
+/**
+ * Working memory for one search over a grid too large to keep V sized arrays for. Only the vertices the search
+ * actually reaches get an entry, in an open addressing hash table, so memory grows with the part of the grid that
+ * is explored instead of with the whole grid. The priority queue is a binary heap of packed longs with lazy
+ * deletion: a vertex is pushed again whenever its distance improves, and stale entries are skipped when polled.
+ * Like SearchScratch, every slot carries a generation stamp and only counts as filled if the stamp matches, so a
+ * thread can keep one scratch and clear it in O(1) between searches.
+ */
+
+final class SparseSearchScratch {
+
+  /**
+   * Generation of the current search
+   */
+  private int generation = 1;
+
+  /**
+   * Generation in which each slot was last filled, a slot whose stamp does not match is empty
+   */
+  private int[] stamp;
+
+  /**
+   * Vertex stored in each filled slot (zero based index)
+   */
+  private int[] vertex;
+
+  /**
+   * Best distance found so far for the vertex in each slot
+   */
+  private int[] distance;
+
+  /**
+   * One based predecessor of the vertex in each slot, 0 for the source
+   */
+  private int[] predecessor;
+
+  /**
+   * Whether the vertex in each slot has been settled
+   */
+  private boolean[] settled;
+
+  /**
+   * Shift that turns a hash into a slot index, 32 minus the number of index bits
+   */
+  private int shift;
+
+  /**
+   * Number of vertices in the hash table
+   */
+  private int count;
+
+  /**
+   * Heap entries, each the priority in the high 32 bits and the vertex in the low 32 bits
+   */
+  private long[] heap;
+
+  /**
+   * Number of entries in the heap
+   */
+  private int heapSize;
+
+  /**
+   * Creates an empty scratch
+   *
+   * @param capacity - Number of vertices the scratch is expected to reach, it grows past this if needed
+   */
+  SparseSearchScratch(int capacity) {
+    int slots = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) * 2;
+    stamp = new int[slots];
+    vertex = new int[slots];
+    distance = new int[slots];
+    predecessor = new int[slots];
+    settled = new boolean[slots];
+    shift = Integer.numberOfLeadingZeros(slots) + 1;
+    heap = new long[16];
+  }
+
+  /**
+   * Starts a new search. Every vertex becomes unreached and the heap is emptied, the tables keep their size.
+   */
+  void clear() {
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      //The stamps are about to wrap around, so clear them for real once
+      Arrays.fill(stamp, 0);
+      generation = 1;
+    }
+    count = 0;
+    heapSize = 0;
+  }
+
+  /**
+   * Finds the slot of a vertex, or the empty slot where it would go
+   *
+   * @param v - Zero based index of the vertex
+   * @return - The slot index
+   */
+  private int slot(int v) {
+    int mask = vertex.length - 1;
+    //Fibonacci hashing spreads neighbouring vertices over the table, since grid searches reach runs of them
+    int i = (v * 0x9E3779B9) >>> shift;
+    while (stamp[i] == generation && vertex[i] != v) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the best distance found so far for a vertex
+   *
+   * @param v - Zero based index of the vertex
+   * @return - The distance, or Integer.MAX_VALUE if the vertex has not been reached
+   */
+  int distance(int v) {
+    int i = slot(v);
+    return stamp[i] != generation ? Integer.MAX_VALUE : distance[i];
+  }
+
+  /**
+   * Returns the predecessor of a reached vertex
+   *
+   * @param v - Zero based index of the vertex
+   * @return - The one based predecessor, or 0 if the vertex is the source or has not been reached
+   */
+  int predecessor(int v) {
+    int i = slot(v);
+    return stamp[i] != generation ? 0 : predecessor[i];
+  }
+
+  /**
+   * Checks if a vertex has been settled
+   *
+   * @param v - Zero based index of the vertex
+   * @return - True if the distance of the vertex is final
+   */
+  boolean isSettled(int v) {
+    int i = slot(v);
+    return stamp[i] == generation && settled[i];
+  }
+
+  /**
+   * Marks a reached vertex as settled
+   *
+   * @param v - Zero based index of the vertex
+   */
+  void settle(int v) {
+    settled[slot(v)] = true;
+  }
+
+  /**
+   * Records a new best distance and predecessor for a vertex
+   *
+   * @param v - Zero based index of the vertex
+   * @param dist - The distance of the vertex
+   * @param pred - The one based predecessor of the vertex, 0 for the source
+   */
+  void reach(int v, int dist, int pred) {
+    int i = slot(v);
+    if (stamp[i] != generation) {
+      if (2 * (count + 1) > vertex.length) {
+        grow();
+        i = slot(v);
+      }
+      stamp[i] = generation;
+      vertex[i] = v;
+      settled[i] = false;
+      count++;
+    }
+    distance[i] = dist;
+    predecessor[i] = pred;
+  }
+
+  /**
+   * Doubles the hash table and moves every entry over
+   */
+  private void grow() {
+    int[] oldStamp = stamp;
+    int[] oldVertex = vertex;
+    int[] oldDistance = distance;
+    int[] oldPredecessor = predecessor;
+    boolean[] oldSettled = settled;
+    int slots = oldVertex.length * 2;
+    stamp = new int[slots];
+    vertex = new int[slots];
+    distance = new int[slots];
+    predecessor = new int[slots];
+    settled = new boolean[slots];
+    shift--;
+    for (int k = 0; k < oldVertex.length; k++) {
+      if (oldStamp[k] == generation) {
+        int i = slot(oldVertex[k]);
+        stamp[i] = generation;
+        vertex[i] = oldVertex[k];
+        distance[i] = oldDistance[k];
+        predecessor[i] = oldPredecessor[k];
+        settled[i] = oldSettled[k];
+      }
+    }
+  }
+
+  /**
+   * Returns the number of vertices reached so far
+   *
+   * @return - The number of reached vertices
+   */
+  int reachedCount() {
+    return count;
+  }
+
+  /**
+   * Checks if the heap is empty
+   *
+   * @return - True if there are no entries left in the heap
+   */
+  boolean isHeapEmpty() {
+    return heapSize == 0;
+  }
+
+  /**
+   * Adds an entry to the heap
+   *
+   * @param v - Zero based index of the vertex
+   * @param priority - The priority of the entry, not negative
+   */
+  void push(int v, int priority) {
+    if (heapSize == heap.length) {
+      heap = Arrays.copyOf(heap, heapSize * 2);
+    }
+    long entry = (long) priority << 32 | v;
+    int slot = heapSize++;
+    while (slot > 0) {
+      int parent = (slot - 1) >>> 1;
+      if (heap[parent] <= entry) {
+        break;
+      }
+      heap[slot] = heap[parent];
+      slot = parent;
+    }
+    heap[slot] = entry;
+  }
+
+  /**
+   * Removes the entry with the smallest priority. The heap must not be empty.
+   *
+   * @return - The vertex of that entry
+   */
+  int poll() {
+    long min = heap[0];
+    long last = heap[--heapSize];
+    int slot = 0;
+    while (true) {
+      int child = 2 * slot + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+        child++;
+      }
+      if (heap[child] >= last) {
+        break;
+      }
+      heap[slot] = heap[child];
+      slot = child;
+    }
+    heap[slot] = last;
+    return (int) min;
+  }
+}
@@ -0,0 +1,125 @@
+package hw4.student;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the tiles of a tiled grid file. The tile data is memory mapped in large windows, so the operating
+ * system pages it in from disk on demand, and the tiles a search is working on are copied into int arrays on the
+ * heap. At most maxTiles arrays are kept, so the heap used by tiles is fixed no matter how big the file is. When the
+ * cache is full the least recently used tile is dropped. Lookups are synchronized, but tiles are copied outside of
+ * the lock, so a slow page fault in one thread does not hold up the others.
+ */
+
+final class TileCache {
+
+  /**
+   * Mapped windows of the tile data, each holding a whole number of tiles
+   */
+  private final IntBuffer[] windows;
+
+  /**
+   * Number of tiles in each window
+   */
+  private final int tilesPerWindow;
+
+  /**
+   * Number of ints in a tile
+   */
+  private final int tileInts;
+
+  /**
+   * Largest number of tiles kept on the heap at once
+   */
+  private final int maxTiles;
+
+  /**
+   * The resident tiles keyed by tile index, kept in access order so the eldest entry is the least recently used one
+   */
+  private final LinkedHashMap<Integer, int[]> tiles;
+
+  /**
+   * Number of times a tile had to be copied in from the mapped file
+   */
+  private long loads;
+
+  /**
+   * Maps the tile data of a file
+   *
+   * @param channel - The open tiled grid file
+   * @param dataStart - Byte offset at which the first tile starts
+   * @param tileCount - Number of tiles in the file
+   * @param tileInts - Number of ints in a tile
+   * @param tilesPerWindow - Number of tiles mapped together
+   * @param maxTiles - Largest number of tiles kept on the heap at once
+   * @throws IOException - If the file can not be mapped
+   */
+  TileCache(FileChannel channel, long dataStart, int tileCount, int tileInts, int tilesPerWindow, int maxTiles)
+      throws IOException {
+    if (maxTiles < 1) {
+      throw new IllegalArgumentException("The cache must hold at least one tile, got " + maxTiles);
+    }
+    this.tileInts = tileInts;
+    this.tilesPerWindow = tilesPerWindow;
+    this.maxTiles = maxTiles;
+    long tileBytes = (long) tileInts * Integer.BYTES;
+    windows = new IntBuffer[(tileCount + tilesPerWindow - 1) / tilesPerWindow];
+    for (int w = 0; w < windows.length; w++) {
+      int tilesInWindow = Math.min(tilesPerWindow, tileCount - w * tilesPerWindow);
+      windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + w * tilesPerWindow * tileBytes,
+          tilesInWindow * tileBytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+    tiles = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        return size() > TileCache.this.maxTiles;
+      }
+    };
+  }
+
+  /**
+   * Returns the weights of a tile, copying it in from the mapped file if it is not resident. The array stays valid
+   * after the tile is evicted, it is just no longer shared.
+   *
+   * @param tile - Index of the tile
+   * @return - The weights of the tile
+   */
+  int[] get(int tile) {
+    synchronized (this) {
+      int[] weights = tiles.get(tile);
+      if (weights != null) {
+        return weights;
+      }
+    }
+    int[] weights = new int[tileInts];
+    //Absolute bulk reads leave the buffer position alone, so threads can copy from the same window at once
+    windows[tile / tilesPerWindow].get((tile % tilesPerWindow) * tileInts, weights);
+    synchronized (this) {
+      loads++;
+      tiles.put(tile, weights);
+    }
+    return weights;
+  }
+
+  /**
+   * Returns the number of tiles on the heap
+   *
+   * @return - The number of resident tiles
+   */
+  synchronized int size() {
+    return tiles.size();
+  }
+
+  /**
+   * Returns the number of times a tile had to be copied in from the mapped file
+   *
+   * @return - The number of tile loads
+   */
+  synchronized long loads() {
+    return loads;
+  }
+}
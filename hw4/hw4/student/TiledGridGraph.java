@@ -0,0 +1,456 @@
+package hw4.student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Grid graph kept on disk for grids that do not fit on the heap. The grid is split into square tiles of
+ * tileSize x tileSize vertices, and the edge weights of each tile are stored together in a memory mapped file, so
+ * a search only needs the few tiles around the part of the grid it explores. A bounded cache keeps the most
+ * recently used tiles on the heap, and each search keeps its distances in a hash table of the vertices it reached,
+ * so the memory a query uses depends on the tile cache size and on how far the search spreads, not on the size of
+ * the grid. Vertices are one based ints like in GridGraph, which limits a grid to 46340 x 46340 vertices.
+ *
+ * A tiled file is a little endian header followed by the tiles in row major tile order:
+ *
+ * <pre>
+ *   int  magic      "GGTL"
+ *   int  version    currently 1
+ *   int  size       length of one side of the grid
+ *   int  tileSize   length of one side of a tile
+ *   int  minWeight  smallest positive edge weight
+ *   int  maxWeight  largest edge weight
+ *   long reserved   always 0
+ *   int  tiles[tileCount][tileSize * tileSize * 4]
+ * </pre>
+ *
+ * Inside a tile the vertices are row major and every vertex has the four weight slots of GridAdjacency. Tiles on
+ * the right and bottom border are stored full size, their slots outside of the grid stay 0. Run this class with a
+ * tab separated graph file, an output file and optionally a tile size to convert a graph without ever holding it
+ * on the heap.
+ */
+
+public final class TiledGridGraph implements GridGraphInterface, Closeable {
+
+  /**
+   * Marks the start of every tiled file ("GGTL" in ASCII)
+   */
+  private static final int MAGIC = 0x4C544747;
+
+  /**
+   * Version of the layout written by this class
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Number of bytes before the tiles start
+   */
+  private static final int HEADER_BYTES = 32;
+
+  /**
+   * Largest number of bytes mapped at once
+   */
+  private static final long WINDOW = 1L << 30;
+
+  /**
+   * Tile size used by the converter when none is given, 1 MB of weights per tile
+   */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  /**
+   * Largest grid whose vertices all have an int index
+   */
+  private static final int MAX_SIZE = 46340;
+
+  /**
+   * The open tiled file
+   */
+  private final FileChannel channel;
+
+  /**
+   * Length of one side of the grid
+   */
+  private final int size;
+
+  /**
+   * Length of one side of a tile
+   */
+  private final int tileSize;
+
+  /**
+   * Number of tiles along one side of the grid
+   */
+  private final int tilesPerSide;
+
+  /**
+   * Smallest positive edge weight, used to scale the A* estimate
+   */
+  private final int minWeight;
+
+  /**
+   * Index offsets for each direction, used to move from a vertex to its neighbour
+   */
+  private final int[] offsets;
+
+  /**
+   * The resident tiles
+   */
+  private final TileCache tiles;
+
+  /**
+   * Search scratch of each thread that queries this graph, cleared between queries
+   */
+  private final ThreadLocal<SparseSearchScratch> scratchBuffers =
+      ThreadLocal.withInitial(() -> new SparseSearchScratch(1024));
+
+  /**
+   * Opens a tiled file written by convert
+   *
+   * @param filename - The tiled file
+   * @param maxResidentTiles - Largest number of tiles kept on the heap at once
+   * @throws IOException - If the file can not be read, is not a tiled file, has an unknown version or is truncated
+   */
+  public TiledGridGraph(String filename, int maxResidentTiles) throws IOException {
+    channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    try {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("File " + filename + " is not a tiled grid file");
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("File " + filename + " is not a tiled grid file");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported tiled file version " + version + " in " + filename);
+      }
+      size = header.getInt();
+      tileSize = header.getInt();
+      minWeight = header.getInt();
+      checkLayout(size, tileSize);
+      tilesPerSide = (size + tileSize - 1) / tileSize;
+      offsets = new int[] {1, -1, size, -size};
+      int tileInts = tileSize * tileSize * GridAdjacency.DIRECTIONS;
+      int tileCount = tilesPerSide * tilesPerSide;
+      if (channel.size() != HEADER_BYTES + (long) tileCount * tileInts * Integer.BYTES) {
+        throw new IOException("Tiled file " + filename + " is truncated");
+      }
+      tiles = new TileCache(channel, HEADER_BYTES, tileCount, tileInts, tilesPerWindow(tileSize), maxResidentTiles);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Makes sure a grid and tile size can be stored
+   *
+   * @param size - Length of one side of the grid
+   * @param tileSize - Length of one side of a tile
+   */
+  private static void checkLayout(int size, int tileSize) {
+    if (size < 0 || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Unsupported grid size " + size + ", the largest is " + MAX_SIZE);
+    }
+    if (tileSize < 1 || (long) tileSize * tileSize * GridAdjacency.DIRECTIONS * Integer.BYTES > WINDOW) {
+      throw new IllegalArgumentException("Unsupported tile size " + tileSize);
+    }
+  }
+
+  /**
+   * Returns how many whole tiles fit in one mapped window
+   *
+   * @param tileSize - Length of one side of a tile
+   * @return - The number of tiles per window
+   */
+  private static int tilesPerWindow(int tileSize) {
+    return (int) (WINDOW / ((long) tileSize * tileSize * GridAdjacency.DIRECTIONS * Integer.BYTES));
+  }
+
+  /**
+   * Converts a tab separated graph file, in the format read by GridGraph.buildGraph, into a tiled file. The edges
+   * are streamed from the input straight into the mapped output, so neither file has to fit on the heap.
+   *
+   * @param textFile - The tab separated input file
+   * @param tiledFile - The tiled file to write, replaced if it exists
+   * @param tileSize - Length of one side of a tile
+   * @throws IOException - If either file can not be used
+   */
+  public static void convert(String textFile, String tiledFile, int tileSize) throws IOException {
+    try (FileChannel out = FileChannel.open(Paths.get(tiledFile), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      TileWriter writer = new TileWriter(out, tileSize);
+      GridGraphLoader.parse(textFile, writer);
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(writer.size).putInt(tileSize)
+          .putInt(writer.minWeight).putInt(writer.maxWeight).putLong(0);
+      header.flip();
+      out.position(0);
+      while (header.hasRemaining()) {
+        out.write(header);
+      }
+    }
+  }
+
+  /**
+   * Streams parsed edges into the mapped windows of a new tiled file
+   */
+  private static final class TileWriter implements GridGraphLoader.EdgeSink {
+
+    /**
+     * The file being written
+     */
+    private final FileChannel out;
+
+    /**
+     * Length of one side of a tile
+     */
+    private final int tileSize;
+
+    /**
+     * Length of one side of the grid, known once the loader reads it
+     */
+    private int size;
+
+    /**
+     * Number of tiles along one side of the grid
+     */
+    private int tilesPerSide;
+
+    /**
+     * Number of tiles in each window
+     */
+    private int tilesPerWindow;
+
+    /**
+     * Mapped windows of the tile data
+     */
+    private IntBuffer[] windows;
+
+    /**
+     * Smallest positive weight written so far, or 0 if there are no edges
+     */
+    private int minWeight;
+
+    /**
+     * Largest weight written so far, or 0 if there are no edges
+     */
+    private int maxWeight;
+
+    /**
+     * Creates a writer for a file
+     *
+     * @param out - The file to write
+     * @param tileSize - Length of one side of a tile
+     */
+    TileWriter(FileChannel out, int tileSize) {
+      this.out = out;
+      this.tileSize = tileSize;
+    }
+
+    @Override
+    public void size(int size) throws IOException {
+      checkLayout(size, tileSize);
+      this.size = size;
+      tilesPerSide = (size + tileSize - 1) / tileSize;
+      tilesPerWindow = tilesPerWindow(tileSize);
+      long tileBytes = (long) tileSize * tileSize * GridAdjacency.DIRECTIONS * Integer.BYTES;
+      int tileCount = tilesPerSide * tilesPerSide;
+      //Mapping past the end grows the file, and the new bytes read as 0, meaning no edge
+      windows = new IntBuffer[(tileCount + tilesPerWindow - 1) / tilesPerWindow];
+      for (int w = 0; w < windows.length; w++) {
+        int tilesInWindow = Math.min(tilesPerWindow, tileCount - w * tilesPerWindow);
+        windows[w] = out.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + w * tilesPerWindow * tileBytes,
+            tilesInWindow * tileBytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+      }
+    }
+
+    @Override
+    public void edge(int from, int to, int weight) {
+      int dir = GridAdjacency.direction(size, from, to);
+      if (dir < 0) {
+        throw new IllegalArgumentException("Vertices " + (from + 1) + " and " + (to + 1) + " are not adjacent in the grid");
+      }
+      int row = from / size;
+      int col = from % size;
+      int tile = (row / tileSize) * tilesPerSide + col / tileSize;
+      int local = (row % tileSize) * tileSize + col % tileSize;
+      int index = (tile % tilesPerWindow) * tileSize * tileSize * GridAdjacency.DIRECTIONS
+          + local * GridAdjacency.DIRECTIONS + dir;
+      windows[tile / tilesPerWindow].put(index, Math.max(weight, 0));
+      if (weight > 0) {
+        if (minWeight == 0 || weight < minWeight) {
+          minWeight = weight;
+        }
+        if (weight > maxWeight) {
+          maxWeight = weight;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the length of one side of the grid
+   *
+   * @return - The length of one side of the grid
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of tiles currently kept on the heap
+   *
+   * @return - The number of resident tiles
+   */
+  public int getResidentTiles() {
+    return tiles.size();
+  }
+
+  /**
+   * Returns how many times a tile had to be copied in from the file, a measure of how well the cache fits the
+   * queries
+   *
+   * @return - The number of tile loads
+   */
+  public long getTileLoads() {
+    return tiles.loads();
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - A String encoding the shortest path. Vertices are separated by whitespace.
+   */
+  public String findShortestPath(int s, int t, boolean weighted) {
+    int[] path = findPath(s, t, weighted);
+    return path.length <= 1 ? "" : GridGraph.formatPath(path, path.length);
+  }
+
+  /**
+   * Finds the shortest path between a source vertex and a target vertex with an A* search guided by the Manhattan
+   * distance, scaled by the smallest edge weight. Tiles are paged in as the search reaches them.
+   *
+   * @param s - Source vertex (one based index)
+   * @param t - Target vertex (one based index)
+   * @param weighted - Whether edge weights should be used or not.
+   * @return - The vertices of the path (one based indices), or GridGraph.NO_PATH if t can not be reached
+   */
+  public int[] findPath(int s, int t, boolean weighted) {
+    checkVertex(s);
+    checkVertex(t);
+    int source = s - 1;
+    int target = t - 1;
+    int scale = weighted ? minWeight : 1;
+    int targetRow = target / size;
+    int targetCol = target % size;
+
+    SparseSearchScratch scratch = scratchBuffers.get();
+    scratch.clear();
+    scratch.reach(source, 0, 0);
+    scratch.push(source, 0);
+
+    //The tile of the last vertex expanded, searches mostly stay inside one tile for a while
+    int lastTile = -1;
+    int[] weights = null;
+    boolean found = false;
+    while (!scratch.isHeapEmpty()) {
+      int min = scratch.poll();
+      if (scratch.isSettled(min)) {
+        continue;
+      }
+      scratch.settle(min);
+      if (min == target) {
+        found = true;
+        break;
+      }
+      int row = min / size;
+      int col = min % size;
+      int tile = (row / tileSize) * tilesPerSide + col / tileSize;
+      if (tile != lastTile) {
+        weights = tiles.get(tile);
+        lastTile = tile;
+      }
+      int base = ((row % tileSize) * tileSize + col % tileSize) * GridAdjacency.DIRECTIONS;
+      int minDistance = scratch.distance(min);
+      for (int dir = 0; dir < GridAdjacency.DIRECTIONS; dir++) {
+        int weight = weights[base + dir];
+        if (weight == 0) {
+          continue;
+        }
+        int j = min + offsets[dir];
+        int candidate = minDistance + (weighted ? weight : 1);
+        if (candidate < scratch.distance(j)) {
+          scratch.reach(j, candidate, min + 1);
+          int estimate = scale * (Math.abs(j / size - targetRow) + Math.abs(j % size - targetCol));
+          scratch.push(j, candidate + estimate);
+        }
+      }
+    }
+    if (!found) {
+      return GridGraph.NO_PATH;
+    }
+
+    int length = 1;
+    for (int v = target; v != source; v = scratch.predecessor(v) - 1) {
+      length++;
+    }
+    int[] path = new int[length];
+    int v = target;
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = v + 1;
+      v = scratch.predecessor(v) - 1;
+    }
+    return path;
+  }
+
+  /**
+   * Makes sure a vertex exists in the graph
+   *
+   * @param v - The vertex to check (one based index)
+   */
+  private void checkVertex(int v) {
+    if (v < 1 || v > size * size) {
+      throw new IllegalArgumentException("Vertex " + v + " is not between 1 and " + size * size);
+    }
+  }
+
+  /**
+   * Closes the tiled file. The mappings are released once they are no longer referenced.
+   *
+   * @throws IOException - If the file can not be closed
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Converts a tab separated graph file into a tiled file.
+   *
+   * @param args - The tab separated input file, the tiled file to write and optionally the tile size
+   * @throws IOException - If either file can not be used
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2 && args.length != 3) {
+      System.err.println("Usage: java hw4.student.TiledGridGraph <graph.txt> <graph.tiles> [tileSize]");
+      System.exit(1);
+    }
+    int tileSize = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_TILE_SIZE;
+    long start = System.nanoTime();
+    convert(args[0], args[1], tileSize);
+    System.out.println("Converted in " + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+}